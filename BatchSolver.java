@@ -0,0 +1,369 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@code BatchSolver} solves a stream of jobs, each a board size and a start
+ * square, on a fixed number of worker threads. Jobs are taken from the
+ * stream only as workers become free, so the stream may be far longer than
+ * would fit in memory, and each result is handed to a
+ * {@code ResultListener} as soon as its job finishes (so in the order the
+ * jobs finish, not the order they were given).
+ * <p>
+ * Each worker keeps the boards it has solved most recently, one
+ * {@code KnightsTour} per size, and resets them for the next job of the same
+ * size rather than building new ones. So a batch of many starts on a few
+ * sizes reuses the same search buffers (and closed tour) over and over, and
+ * every board of a size shares the same {@code KnightGraph}.
+ */
+public class BatchSolver {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	// the number of board sizes each worker keeps ready.
+	private static final int BOARDS_PER_WORKER = 8;
+
+	private final int threads;
+	private KnightsTour.Strategy strategy = KnightsTour.Strategy.WARNSDORFF;
+	private boolean closed;
+	private long timeLimit; // milliseconds per job, or 0 for none
+	private final CancellationToken token = new CancellationToken();
+
+	/**
+	 * A {@code Job} is one board size and start square to solve.
+	 */
+	public static class Job {
+		private final int width;
+		private final int height;
+		private final int x;
+		private final int y;
+
+		/**
+		 * Creates a job.
+		 * @param width The number of columns of the board.
+		 * @param height The number of rows of the board.
+		 * @param x the knight's starting x position.
+		 * @param y the knight's starting y position.
+		 */
+		public Job(int width, int height, int x, int y) {
+			if (width < 1 || height < 1) {
+				throw new IllegalArgumentException(
+				        "Size must be at least 1.");
+			}
+			this.width = width;
+			this.height = height;
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Returns the number of columns of the board.
+		 * @return the number of columns of the board.
+		 */
+		public int getWidth() {
+			return width;
+		}
+
+		/**
+		 * Returns the number of rows of the board.
+		 * @return the number of rows of the board.
+		 */
+		public int getHeight() {
+			return height;
+		}
+
+		/**
+		 * Returns the knight's starting x position.
+		 * @return the knight's starting x position.
+		 */
+		public int getX() {
+			return x;
+		}
+
+		/**
+		 * Returns the knight's starting y position.
+		 * @return the knight's starting y position.
+		 */
+		public int getY() {
+			return y;
+		}
+
+		/**
+		 * Returns the job in the form "WxH (x, y)".
+		 * @return a human readable description of the job.
+		 */
+		public String toString() {
+			return width + "x" + height + " (" + x + ", " + y + ")";
+		}
+	}
+
+	/**
+	 * A {@code Result} is the outcome of one job, with its tour and how long
+	 * it took.
+	 */
+	public static class Result {
+		private final Job job;
+		private final KnightsTour.Outcome outcome;
+		private final int[] path;
+		private final long nanos;
+		private final SearchStats stats;
+
+		Result(Job job, KnightsTour.Outcome outcome, int[] path, long nanos,
+		        SearchStats stats) {
+			this.job = job;
+			this.outcome = outcome;
+			this.path = path;
+			this.nanos = nanos;
+			this.stats = stats;
+		}
+
+		/**
+		 * Returns the job this is the result of.
+		 * @return the Job.
+		 */
+		public Job getJob() {
+			return job;
+		}
+
+		/**
+		 * Returns how the solve ended.
+		 * @return the Outcome.
+		 */
+		public KnightsTour.Outcome getOutcome() {
+			return outcome;
+		}
+
+		/**
+		 * Returns the tour, as the square (x + y * width) of each step.
+		 * @return the tour, or null if none was found.
+		 */
+		public int[] getPath() {
+			return path;
+		}
+
+		/**
+		 * Returns how long the job took to solve, not counting the time it
+		 * waited for a worker.
+		 * @return the time in nanoseconds.
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * Returns how much work the solve did (see KnightsTour.getStats()).
+		 * @return the SearchStats, or null if the job was never started.
+		 */
+		public SearchStats getStats() {
+			return stats;
+		}
+	}
+
+	/**
+	 * The boards a worker has solved most recently, by size (width << 32 |
+	 * height), dropping the least recently used past BOARDS_PER_WORKER.
+	 */
+	private static class Boards extends LinkedHashMap<Long, KnightsTour> {
+		private static final long serialVersionUID = 1L;
+
+		Boards() {
+			super(16, 0.75f, true);
+		}
+
+		protected boolean removeEldestEntry(
+		        Map.Entry<Long, KnightsTour> eldest) {
+			return size() > BOARDS_PER_WORKER;
+		}
+	}
+
+	/**
+	 * A {@code ResultListener} is given each result as its job finishes. It
+	 * is always called from the thread running run(), so it need not be
+	 * thread safe.
+	 */
+	public interface ResultListener {
+		/**
+		 * Called once per job, in the order the jobs finish.
+		 * @param result the Result of the job.
+		 */
+		void finished(Result result);
+	}
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a batch solver with the given number of worker threads.
+	 * @param threads the number of jobs to solve at once.
+	 */
+	public BatchSolver(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+			        "There must be at least one thread.");
+		}
+		this.threads = threads;
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Assigns the strategy every job is solved with (WARNSDORFF by default).
+	 * @param strategy the Strategy to use.
+	 */
+	public void setStrategy(KnightsTour.Strategy strategy) {
+		if (strategy == null) {
+			throw new IllegalArgumentException("Strategy must not be null.");
+		}
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Sets whether every job only accepts closed tours.
+	 * @param closed true to only accept closed tours.
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
+
+	/**
+	 * Limits how long each job may search for (see
+	 * KnightsTour.setTimeLimit()).
+	 * @param millis the limit in milliseconds, or 0 for none.
+	 */
+	public void setTimeLimit(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException(
+			        "Time limit must not be negative.");
+		}
+		timeLimit = millis;
+	}
+
+	/**
+	 * Cancels the batch. Jobs already running stop within a few thousand
+	 * moves, and every job left is reported as CANCELLED without being
+	 * solved.
+	 */
+	public void cancel() {
+		token.cancel();
+	}
+
+	/**
+	 * Solves every job, and waits for the last one to finish. At most two
+	 * jobs per thread are taken from the stream ahead of the workers.
+	 *
+	 * @param jobs the jobs to solve.
+	 * @param listener the ResultListener to give each result to.
+	 */
+	public void run(Iterator<Job> jobs, ResultListener listener) {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CompletionService<Result> done =
+		        new ExecutorCompletionService<Result>(pool);
+		final ThreadLocal<Boards> boards = new ThreadLocal<Boards>() {
+			protected Boards initialValue() {
+				return new Boards();
+			}
+		};
+		try {
+			int running = 0;
+			while (jobs.hasNext() || running > 0) {
+				if (jobs.hasNext() && running < 2 * threads) {
+					final Job job = jobs.next();
+					done.submit(new Callable<Result>() {
+						public Result call() {
+							return solve(job, boards.get());
+						}
+					});
+					running++;
+				}
+				else {
+					listener.finished(take(done));
+					running--;
+				}
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Solves every job, and returns the results in the order the jobs
+	 * finished.
+	 *
+	 * @param jobs the jobs to solve.
+	 * @return the results.
+	 */
+	public List<Result> run(Iterable<Job> jobs) {
+		final List<Result> results = new ArrayList<Result>();
+		run(jobs.iterator(), new ResultListener() {
+			public void finished(Result result) {
+				results.add(result);
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * Waits for the next job to finish.
+	 */
+	private Result take(CompletionService<Result> done) {
+		try {
+			return done.take().get();
+		}
+		catch (InterruptedException e) {
+			token.cancel();
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted.", e);
+		}
+		catch (ExecutionException e) {
+			token.cancel();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Solves one job on a worker thread, reusing the worker's board of the
+	 * job's size if it has one.
+	 * @param job the Job to solve.
+	 * @param boards the worker's boards, by size.
+	 * @return the Result.
+	 */
+	private Result solve(Job job, Boards boards) {
+		long start = System.nanoTime();
+		if (token.isCancelled()) {
+			return new Result(job, KnightsTour.Outcome.CANCELLED, null, 0,
+			        null);
+		}
+		Long size = (long) job.getWidth() << 32 | job.getHeight();
+		KnightsTour tour = boards.get(size);
+		if (tour == null) {
+			tour = new KnightsTour(job.getWidth(), job.getHeight());
+			tour.setCancellationToken(token);
+			boards.put(size, tour);
+		}
+		else {
+			tour.reset();
+		}
+		tour.setStrategy(strategy);
+		tour.setClosed(closed);
+		tour.setTimeLimit(timeLimit);
+		KnightsTour.Outcome outcome = tour.solve(job.getX(), job.getY());
+		int[] path = outcome == KnightsTour.Outcome.SOLVED
+		        ? tour.getPath().clone() : null;
+		return new Result(job, outcome, path, System.nanoTime() - start,
+		        tour.getStats());
+	}
+}
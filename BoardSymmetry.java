@@ -0,0 +1,130 @@
+/**
+ * {@code BoardSymmetry} lists the ways a board can be turned or flipped onto
+ * itself. A knight's move stays a knight's move under each of them, so a tour
+ * from one square becomes a tour from any square it maps to, just by mapping
+ * every square of the tour. A square board has 8 symmetries (4 rotations,
+ * each with or without a flip); other rectangles have 4 (the identity, the
+ * two flips, and a half turn).
+ * <p>
+ * Symmetry t flips x if bit 0 is set, flips y if bit 1 is set, and swaps x
+ * and y first if bit 2 is set. The canonical square of a square's
+ * equivalence class is the lowest numbered one.
+ */
+public final class BoardSymmetry {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private final int width;
+	private final int height;
+	private final int count;
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates the symmetries of a width x height board.
+	 * @param width the number of columns.
+	 * @param height the number of rows.
+	 */
+	public BoardSymmetry(int width, int height) {
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("Size must be at least 1.");
+		}
+		this.width = width;
+		this.height = height;
+		count = width == height ? 8 : 4;
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Returns the number of symmetries of the board.
+	 * @return 8 for a square board, or 4.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Maps square s through symmetry t.
+	 * @param t the symmetry, from 0 to getCount() - 1.
+	 * @param s the square (x + y * width).
+	 * @return the square s is mapped to.
+	 */
+	public int map(int t, int s) {
+		int x = s % width;
+		int y = s / width;
+		if ((t & 4) != 0) {
+			int temp = x;
+			x = y;
+			y = temp;
+		}
+		if ((t & 1) != 0) {
+			x = width - 1 - x;
+		}
+		if ((t & 2) != 0) {
+			y = height - 1 - y;
+		}
+		return x + y * width;
+	}
+
+	/**
+	 * Maps every square of a tour through symmetry t.
+	 * @param t the symmetry, from 0 to getCount() - 1.
+	 * @param tour the squares of the tour.
+	 * @return a new array holding the mapped tour.
+	 */
+	public int[] map(int t, int[] tour) {
+		int[] mapped = new int[tour.length];
+		for (int m = 0; m < tour.length; m++) {
+			mapped[m] = map(t, tour[m]);
+		}
+		return mapped;
+	}
+
+	/**
+	 * Returns the symmetry that undoes symmetry t.
+	 * @param t the symmetry, from 0 to getCount() - 1.
+	 * @return the inverse of t.
+	 */
+	public int inverse(int t) {
+		// flips are their own inverse, but after a swap, undoing them means
+		// flipping the other axis.
+		if ((t & 4) != 0) {
+			return 4 | ((t & 1) << 1) | ((t & 2) >> 1);
+		}
+		return t;
+	}
+
+	/**
+	 * Returns a symmetry that maps square s to its canonical square.
+	 * @param s the square (x + y * width).
+	 * @return the symmetry, from 0 to getCount() - 1.
+	 */
+	public int toCanonical(int s) {
+		int best = 0;
+		int lowest = s;
+		for (int t = 1; t < count; t++) {
+			int image = map(t, s);
+			if (image < lowest) {
+				lowest = image;
+				best = t;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the canonical square of the class of square s.
+	 * @param s the square (x + y * width).
+	 * @return the lowest numbered square that s can be mapped to.
+	 */
+	public int canonical(int s) {
+		return map(toCanonical(s), s);
+	}
+}
@@ -0,0 +1,36 @@
+/**
+ * A {@code CancellationToken} asks a running search to stop. Cancelling only
+ * sets a flag; the search checks it every few thousand moves, unmarks the
+ * squares it has visited, and returns, so it always leaves its state usable
+ * (unlike stopping its thread).
+ * <p>
+ * One token may be shared by any number of searches, on any threads, and
+ * once cancelled it stays cancelled.
+ */
+public class CancellationToken {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private volatile boolean cancelled;
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Asks every search checking this token to stop.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Checks if cancel() has been called.
+	 * @return true if the token has been cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * {@code ClosedTour} holds a closed tour of a board: one whose last square is
+ * a knight's move from its first. Such a tour is a cycle through every
+ * square, so starting it at a different square (and wrapping around at the
+ * end) gives a tour from that square. One closed tour therefore serves every
+ * start on the board, each in time proportional to the number of squares,
+ * with no further search.
+ */
+public final class ClosedTour {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private final int[] cycle; // the square of each step
+	private final int[] index; // the step of each square
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a ClosedTour from the squares of a closed tour.
+	 * @param tour the square (x + y * width) of each step; it is copied.
+	 */
+	public ClosedTour(int[] tour) {
+		cycle = tour.clone();
+		index = new int[cycle.length];
+		for (int m = 0; m < cycle.length; m++) {
+			index[cycle[m]] = m;
+		}
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Returns the number of squares in the tour.
+	 * @return the length of the tour.
+	 */
+	public int getLength() {
+		return cycle.length;
+	}
+
+	/**
+	 * Stores the tour starting at square s into tour[0 ... getLength() - 1].
+	 * @param s the square to start at (x + y * width).
+	 * @param tour the array to store the squares of each step into.
+	 */
+	public void startingAt(int s, int[] tour) {
+		int first = index[s];
+		int rest = cycle.length - first;
+		System.arraycopy(cycle, first, tour, 0, rest);
+		System.arraycopy(cycle, 0, tour, rest, first);
+	}
+
+	/**
+	 * Returns the tour starting at square s.
+	 * @param s the square to start at (x + y * width).
+	 * @return a new array holding the square of each step.
+	 */
+	public int[] startingAt(int s) {
+		int[] tour = new int[cycle.length];
+		startingAt(s, tour);
+		return tour;
+	}
+}
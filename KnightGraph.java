@@ -0,0 +1,246 @@
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code KnightGraph} lists the legal knight moves from every square of a
+ * board, so a search never has to generate a move and then check whether it
+ * left the board. Squares are numbered x + y * width, and the moves from
+ * square s are neighbours[first[s]] up to (but not including)
+ * neighbours[first[s + 1]], in the same order that {@code KnightsTour.move()}
+ * tries them. On boards of up to 64 squares, the moves from each square are
+ * also available as a bit mask, for use with a {@code VisitedSet}.
+ * <p>
+ * Graphs are immutable and cached per board size, so every search of the same
+ * size shares one table. The cache holds them softly, so the tables of large
+ * boards can still be reclaimed when memory runs low.
+ */
+public final class KnightGraph {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	// the eight knight moves, in the order move() tries them.
+	static final int[] DX = { 2, 2, -2, -2, 1, 1, -1, -1 };
+	static final int[] DY = { 1, -1, 1, -1, 2, -2, 2, -2 };
+
+	private static final Map<Long, SoftReference<KnightGraph>> CACHE =
+	        new HashMap<Long, SoftReference<KnightGraph>>();
+
+	final int width;
+	final int height;
+	final int squares;
+	final int[] first; // index of the first move from each square
+	final int[] neighbours; // the square each move leads to
+	final byte[] directions; // the index into DX and DY of each move
+	final int[] distance; // 4 x the squared distance from the center
+	final long[] masks; // the squares each square attacks (up to 64 squares)
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Builds the graph of a width x height board. Use of() to share graphs.
+	 * @param width the number of columns.
+	 * @param height the number of rows.
+	 */
+	private KnightGraph(int width, int height) {
+		this.width = width;
+		this.height = height;
+		squares = width * height;
+		first = new int[squares + 1];
+		distance = new int[squares];
+
+		// count the moves first, so the arrays can be sized exactly
+		int total = 0;
+		for (int s = 0; s < squares; s++) {
+			int x = s % width;
+			int y = s / width;
+			for (int i = 0; i < 8; i++) {
+				if (isOnBoard(x + DX[i], y + DY[i])) {
+					total++;
+				}
+			}
+		}
+		neighbours = new int[total];
+		directions = new byte[total];
+
+		int k = 0;
+		for (int s = 0; s < squares; s++) {
+			int x = s % width;
+			int y = s / width;
+			first[s] = k;
+			for (int i = 0; i < 8; i++) {
+				int nx = x + DX[i];
+				int ny = y + DY[i];
+				if (isOnBoard(nx, ny)) {
+					neighbours[k] = nx + ny * width;
+					directions[k] = (byte) i;
+					k++;
+				}
+			}
+			int dx = 2 * x - (width - 1);
+			int dy = 2 * y - (height - 1);
+			distance[s] = dx * dx + dy * dy;
+		}
+		first[squares] = k;
+
+		// small boards also get a bit mask of the moves from each square
+		if (squares <= 64) {
+			masks = new long[squares];
+			for (int s = 0; s < squares; s++) {
+				for (k = first[s]; k < first[s + 1]; k++) {
+					masks[s] |= 1L << neighbours[k];
+				}
+			}
+		}
+		else {
+			masks = null;
+		}
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Returns the graph of a width x height board, building it only if it is
+	 * not already cached.
+	 * @param width the number of columns.
+	 * @param height the number of rows.
+	 * @return the shared KnightGraph.
+	 */
+	public static KnightGraph of(int width, int height) {
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("Size must be at least 1.");
+		}
+		Long key = ((long) width << 32) | height;
+		synchronized (CACHE) {
+			SoftReference<KnightGraph> ref = CACHE.get(key);
+			KnightGraph graph = ref == null ? null : ref.get();
+			if (graph == null) {
+				graph = new KnightGraph(width, height);
+				CACHE.put(key, new SoftReference<KnightGraph>(graph));
+			}
+			return graph;
+		}
+	}
+
+	/**
+	 * Returns the index into DX and DY of the knight move (dx, dy).
+	 * @param dx the change in x.
+	 * @param dy the change in y.
+	 * @return the index, from 0 to 7.
+	 * @throws IllegalArgumentException if (dx, dy) is not a knight move.
+	 */
+	static int direction(int dx, int dy) {
+		for (int i = 0; i < 8; i++) {
+			if (DX[i] == dx && DY[i] == dy) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Not a knight move.");
+	}
+
+	/**
+	 * Checks if (x, y) lies on the board.
+	 */
+	private boolean isOnBoard(int x, int y) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+
+	/**
+	 * Returns the number of columns.
+	 * @return the width.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of rows.
+	 * @return the height.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the number of squares on the board.
+	 * @return width x height.
+	 */
+	public int getSquareCount() {
+		return squares;
+	}
+
+	/**
+	 * Checks a cheap necessary condition for a tour to start on square s: the
+	 * knight changes color every move, so on a board with an odd number of
+	 * squares the tour has to start (and end) on the more common color.
+	 * @param s the square (x + y * width).
+	 * @return false if no tour can start on s.
+	 */
+	public boolean colorAllowsStart(int s) {
+		return squares % 2 == 0 || (s % width + s / width) % 2 == 0;
+	}
+
+	/**
+	 * Checks the cheap necessary conditions for a tour to start on square s:
+	 * colorAllowsStart(s), and on a board 4 squares across, that s lies on
+	 * one of the two outer lines. The outer squares only lead to inner ones,
+	 * and there are as many of each, so a tour has to alternate between them,
+	 * except for one pair of inner squares in a row; without that pair every
+	 * inner square would be the same color. So the tour has to start (and
+	 * end) on an outer square.
+	 * @param s the square (x + y * width).
+	 * @return false if no tour can start on s.
+	 */
+	public boolean allowsStart(int s) {
+		int x = s % width;
+		int y = s / width;
+		if (height == 4 && (y == 1 || y == 2)
+		        || width == 4 && (x == 1 || x == 2)) {
+			return false;
+		}
+		return colorAllowsStart(s);
+	}
+
+	/**
+	 * Checks if the board has a closed tour at all. By Schwenk's theorem, a
+	 * board whose shorter side is m and longer side is n has one unless m and
+	 * n are both odd, m is 1, 2 or 4, or m is 3 and n is 4, 6 or 8.
+	 * @return true if the board has a closed tour.
+	 */
+	public boolean allowsClosedTour() {
+		int m = Math.min(width, height);
+		int n = Math.max(width, height);
+		if (m % 2 == 1 && n % 2 == 1) {
+			return false;
+		}
+		if (m == 1 || m == 2 || m == 4) {
+			return false;
+		}
+		return !(m == 3 && (n == 4 || n == 6 || n == 8));
+	}
+
+	/**
+	 * Returns the number of legal knight moves from square s.
+	 * @param s the square (x + y * width).
+	 * @return the number of moves, from 0 to 8.
+	 */
+	public int degree(int s) {
+		return first[s + 1] - first[s];
+	}
+
+	/**
+	 * Returns the square that the k-th move from square s leads to.
+	 * @param s the square (x + y * width).
+	 * @param k the move, from 0 to degree(s) - 1.
+	 * @return the square moved to.
+	 */
+	public int neighbour(int s, int k) {
+		return neighbours[first[s] + k];
+	}
+}
@@ -1,5 +1,10 @@
 import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 import javax.swing.JTextArea;
 import javax.swing.SwingUtilities;
@@ -9,6 +14,11 @@ import javax.swing.SwingUtilities;
  * <p>
  * {@code KnightsTour} implements a backtracking algorithm solution to the
  * knight's tour problem.
+ * <p>
+ * Each instance keeps its own board size and search state, and shares only
+ * immutable data (such as the {@code KnightGraph} of its size) with other
+ * instances, so boards of different sizes can be solved on different threads
+ * at the same time.
  * 
  * @author Aaron Carson
  * @version May 12, 2014
@@ -19,13 +29,90 @@ public class KnightsTour {
 	// fields
 	// *********************************************************************
 
-	private static int N;
-	private static int M;
-	private boolean[][] visited;
-	private String[] solution; // holds the solution steps (example: {"0, 0"})
+	private final int W;
+	private final int H;
+	private final int M;
+	private final KnightGraph graph; // shared by every board of this size
+	private final VisitedSet visited;
+	private final int[] path; // the square (x + y * W) of each step, or -1
+	private String[] solution; // built from path by getSolution()
+	private Strategy strategy;
+	private boolean closed; // only accept closed tours
+	private ClosedTour closedTour; // the first closed tour found, if any
 	private Stack<KPanel> stack;
 	private Color animationColor;
 	private Thread thread;
+	private volatile CancellationToken token = new CancellationToken();
+	private long timeLimit; // milliseconds per solve, or 0 for none
+	private long nodeLimit; // moves per solve, or 0 for none
+	private int tieBreak; // the first Warnsdorff tie-break rotation
+	private long seed = 1; // the seed of a RANDOMIZED search
+	private Outcome outcome; // how the last solve ended
+	private TourSearch search; // kept for the next solve of this board
+	private TourCache cache; // tours already found, or null
+	private SearchStats stats; // the work done by the last solve
+	private SolverMonitor.Solve active; // the solve in progress, if any
+
+	/**
+	 * The move ordering used by {@code solve()} to search for a tour.
+	 */
+	public enum Strategy {
+		/** Try the eight knight moves in a fixed order (see move()). */
+		BACKTRACKING("Backtracking"),
+
+		/**
+		 * Try the moves with the fewest onward moves first (Warnsdorff's
+		 * rule), backtracking if the heuristic runs into a dead end.
+		 */
+		WARNSDORFF("Warnsdorff's Rule"),
+
+		/**
+		 * Try the moves in a random order, from a seeded generator, and
+		 * restart with a new order after a growing number of moves (see
+		 * TourSearch.setSeed()). The same seed always finds the same tour.
+		 */
+		RANDOMIZED("Randomized Restarts"),
+
+		/**
+		 * Build the tour out of small closed tours (see TourConstruction)
+		 * without searching, on boards whose sides are even and at least 6,
+		 * or out of small paths (see StripTour) on open tours of strips 3 or
+		 * 4 squares across. Other boards and starts, and searches other than
+		 * solve() and solveParallel(), use WARNSDORFF.
+		 */
+		CONSTRUCTION("Divide and Conquer");
+
+		private final String label;
+
+		private Strategy(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Returns a human readable name for this strategy.
+		 * @return the label to display.
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	/**
+	 * How a call to {@code solve()} ended.
+	 */
+	public enum Outcome {
+		/** A tour was found. */
+		SOLVED,
+
+		/** There is no tour from the start square. */
+		NO_TOUR,
+
+		/** The time or node limit ran out before a tour was found. */
+		TIMED_OUT,
+
+		/** The search was cancelled before a tour was found. */
+		CANCELLED
+	}
 
 	// *********************************************************************
 	// constructors
@@ -38,13 +125,28 @@ public class KnightsTour {
 	 * @param size The height and width of the board to solve over.
 	 */
 	public KnightsTour(int size) {
-		if (size < 1) {
+		this(size, size);
+	}
+
+	/**
+	 * Creates a width x height board to find a solution for the Knights Tour
+	 * on.
+	 * 
+	 * @param width The number of columns of the board.
+	 * @param height The number of rows of the board.
+	 */
+	public KnightsTour(int width, int height) {
+		if (width < 1 || height < 1) {
 			throw new IllegalArgumentException("Size must be at least 1.");
 		}
-		N = size;
-		M = N * N - 1;
-		visited = new boolean[size][size];
-		solution = new String[M + 1];
+		W = width;
+		H = height;
+		M = W * H - 1;
+		graph = KnightGraph.of(width, height);
+		visited = VisitedSet.create(graph);
+		path = new int[M + 1];
+		Arrays.fill(path, -1);
+		strategy = Strategy.BACKTRACKING;
 	}
 
 	/**
@@ -71,28 +173,27 @@ public class KnightsTour {
 	 */
 	public boolean move(int x, int y, int m) {
 		// check if coordinate has passed off the board
-		if (x < 0 || x >= N || y < 0 || y >= N) {
+		if (x < 0 || x >= W || y < 0 || y >= H) {
 			return false;
 		}
 
 		// check if coordinate has already been visited
-		if (visited[x][y] == true) {
+		if (visited.contains(x + y * W)) {
 			return false;
 		}
 
 		// valid move and knight has now made M moves; finished!
 		if (m == M) {
 			// System.out.println("A solution has been found");
-			solution[m] = x + ", " + y;
-			// System.out.println(solution[m]);
+			path[m] = x + y * W;
 
-			visited[x][y] = true;
+			visited.add(x + y * W);
 			return true;
 		}
 		// this is a valid move, but a tour has not been completed. So, try all
 		// moves that can be made from this location recursively.
 		else {
-			visited[x][y] = true;
+			visited.add(x + y * W);
 
 			boolean result = false;
 
@@ -109,15 +210,15 @@ public class KnightsTour {
 			// one of the 8 moves led to a completed tour. so, this position is
 			// part of a successful tour.
 			if (result == true) {
-				solution[m] = x + ", " + y;
-				// System.out.println(solution[m]);
+				path[m] = x + y * W;
+				solution = null;
 				return true;
 			}
 
 			// none of the moves from this position led to a successful tour. We
 			// must backtrack and try a different path
 			else {
-				visited[x][y] = false;
+				visited.remove(x + y * W);
 				return false;
 			}
 
@@ -125,71 +226,70 @@ public class KnightsTour {
 	}
 
 	/**
-	 * moveWithAnimation(int,int,int,Lab2GUI) is identical to move(int,int,int)
-	 * except that it also displays each recursive call to move() in the GUI
-	 * view. This is just for fun and to better understand how the backtracking
-	 * algorithm works.
+	 * moveWithAnimation(int,int,Lab2GUI) finds the same tour as
+	 * move(int,int,int), except that it also displays each step of the search
+	 * in the GUI view. This is just for fun and to better understand how the
+	 * backtracking algorithm works.
 	 * <p>
-	 * This implements the pseudocode logic as given in the lab2 printout. It
-	 * uses a backtracking, depth-first search to find a solution for the
-	 * Knight's Tour Problem given the x & y positions for the knight.
+	 * The search itself is run by a {@code TourSearch}, which keeps its own
+	 * stack rather than recursing once per square. Once cancel() is called,
+	 * the search stops drawing and waiting, and returns within a few
+	 * thousand moves.
 	 * 
-	 * * @param x a horizontal coordinate on the board.
-	 * @param y a vertical coordinate on the board.
-	 * @param m the move number
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @param gui the Lab2GUI to display the search in.
 	 * @return true or false
 	 */
-	public boolean moveWithAnimation(int x, int y, int m, Lab2GUI gui) {
-		// check if coordinate has passed off the board
-		if (x < 0 || x >= N || y < 0 || y >= N) {
-			return false;
-		}
-
-		// check if coordinate has already been visited
-		if (visited[x][y] == true) {
-			return false;
-		}
+	public boolean moveWithAnimation(int x, int y, final Lab2GUI gui) {
+		reset();
+		final CancellationToken token = this.token;
+		TourSearch search = new TourSearch(W, H, Strategy.BACKTRACKING);
+		search.setCancellationToken(token);
+		search.setListener(new TourSearch.Listener() {
+			public void visited(int x, int y, int m) {
+				if (!token.isCancelled()) {
+					addPanel(gui.getPanels()[x + y * W], String.valueOf(m),
+					        gui);
+				}
+			}
 
-		// valid move and knight has now made M moves; finished!
-		if (m == M) {
-			solution[m] = x + ", " + y;
-			visited[x][y] = true;
-			addPanel(gui.getPanels()[x + y * N], String.valueOf(m), gui);
+			public void backtracked(int x, int y, int m) {
+				if (!token.isCancelled()) {
+					removePanel(gui.getPanels()[x + y * W], "", gui);
+				}
+			}
+		});
+		boolean solved = search.search(x, y);
+		stats = search.getStats();
+		if (solved) {
 			finishAnimation();
-			return true;
+			setSolution(search);
 		}
-		// this is a valid move, but a tour has not been completed. So, try all
-		// moves that can be made from this location recursively.
-		else {
-			visited[x][y] = true;
-			addPanel(gui.getPanels()[x + y * N], String.valueOf(m), gui);
-			boolean result = false;
-
-			// iterate over all possible knight moves
-			result = result || moveWithAnimation(x + 2, y + 1, m + 1, gui);
-			result = result || moveWithAnimation(x + 2, y - 1, m + 1, gui);
-			result = result || moveWithAnimation(x - 2, y + 1, m + 1, gui);
-			result = result || moveWithAnimation(x - 2, y - 1, m + 1, gui);
-			result = result || moveWithAnimation(x + 1, y + 2, m + 1, gui);
-			result = result || moveWithAnimation(x + 1, y - 2, m + 1, gui);
-			result = result || moveWithAnimation(x - 1, y + 2, m + 1, gui);
-			result = result || moveWithAnimation(x - 1, y - 2, m + 1, gui);
-
-			// one of the 8 moves led to a completed tour. so, this position is
-			// part of a successful tour.
-			if (result == true) {
-				solution[m] = x + ", " + y;
-				return true;
-			}
+		return solved;
+	}
 
-			// none of the moves from this position led to a successful tour. We
-			// must backtrack and try a different path
-			else {
-				visited[x][y] = false;
-				removePanel(gui.getPanels()[x + y * N], "", gui);
-				return false;
-			}
+	/**
+	 * moveWithAnimation(int,int,int,Lab2GUI) is the old form of
+	 * moveWithAnimation(int,int,Lab2GUI), from when the search recursed once
+	 * per square and m was the move number of (x, y). The search now keeps
+	 * its own stack, so it can only be started from the first move.
+	 *
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @param m the move number, which must be 0.
+	 * @param gui the Lab2GUI to display the search in.
+	 * @return true or false
+	 * @throws IllegalArgumentException if m is not 0.
+	 * @deprecated use moveWithAnimation(int,int,Lab2GUI) instead.
+	 */
+	@Deprecated
+	public boolean moveWithAnimation(int x, int y, int m, Lab2GUI gui) {
+		if (m != 0) {
+			throw new IllegalArgumentException(
+			        "The search can only start from move 0.");
 		}
+		return moveWithAnimation(x, y, gui);
 	}
 
 	/**
@@ -280,24 +380,38 @@ public class KnightsTour {
 		animationColor = gui.getAnimationColor();
 
 		// append info
-		t.append("board size:\t" + N + " x " + N + "\nstart position:\t(" + x
+		t.append("board size:\t" + W + " x " + H + "\nstart position:\t(" + x
 		        + ", " + y + ")\nAnimating algorithm ...\n");
 
 		// run animation in separate thread to allow scheduling.
 		thread = new Thread() {
 			public void run() {
-				boolean solved = moveWithAnimation(x, y, 0, gui);
+				boolean solved = moveWithAnimation(x, y, gui);
 				if(solved){
-					t.append("a solution was found.");
+					t.append("a solution was found.\n");
 				}
 				else{
-					t.append("no solution was found.");
+					t.append("no solution was found.\n");
 				}
+				t.append(stats + "\n");
 			}
 		};
 		thread.start();
 	}
 
+	/**
+	 * Clears the tour, so the board can be solved again from another start
+	 * without building a new KnightsTour. The board keeps its settings, its
+	 * closed tour (if any) and its search buffers.
+	 */
+	public void reset() {
+		visited.clear();
+		Arrays.fill(path, -1);
+		solution = null;
+		outcome = null;
+		stats = null;
+	}
+
 	/**
 	 * Returns the animation thread.
 	 * @return the animation thread.
@@ -307,35 +421,520 @@ public class KnightsTour {
 	}
 
 	/**
-	 * Assigns a new value to the animation thread.
+	 * Assigns a new value to the animation thread. If the old thread is
+	 * still running, it is cancelled first, and the board gets a new token.
 	 * @param t the new Thread to assign.
 	 */
-	@SuppressWarnings("deprecation")
 	public void setAnimationThread(Thread t) {
-		if (thread != null) {
-			thread.stop();
+		if (thread != null && thread.isAlive()) {
+			cancel();
+			token = new CancellationToken();
 		}
 		thread = t;
 	}
 
+	/**
+	 * Cancels the current solve or animation, and waits for the animation
+	 * thread (if any) to finish. The search checks the token every few
+	 * thousand moves, and the animation checks it every step, so neither is
+	 * left half way through changing the board.
+	 */
+	public void cancel() {
+		token.cancel();
+		Thread t = thread;
+		if (t != null && t != Thread.currentThread()) {
+			t.interrupt();
+			try {
+				t.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Checks if the board's current token has been cancelled.
+	 * @return true if cancel() has been called.
+	 */
+	public boolean isCancelled() {
+		return token.isCancelled();
+	}
+
+	/**
+	 * Assigns the token that stops this board's searches when it is
+	 * cancelled, so that one token can cancel the searches of several boards.
+	 * @param token the CancellationToken to check.
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		if (token == null) {
+			throw new IllegalArgumentException("Token must not be null.");
+		}
+		this.token = token;
+	}
+
+	/**
+	 * Limits how long each solve may search for. The construction
+	 * strategies, and closed tours after the first, do not search, so they
+	 * are not limited.
+	 * @param millis the limit in milliseconds, or 0 for none.
+	 */
+	public void setTimeLimit(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException(
+			        "Time limit must not be negative.");
+		}
+		timeLimit = millis;
+	}
+
+	/**
+	 * Limits the number of moves each solve may make or take back (see
+	 * TourSearch.setNodeLimit()). Backtracks count toward the limit, so it
+	 * is compared with getNodes() plus getBacktracks() of getStats(), not
+	 * with getNodes() alone.
+	 * @param nodes the limit, or 0 for none.
+	 */
+	public void setNodeLimit(long nodes) {
+		if (nodes < 0) {
+			throw new IllegalArgumentException(
+			        "Node limit must not be negative.");
+		}
+		nodeLimit = nodes;
+	}
+
+	/**
+	 * Assigns a cache of tours already found, which solve() looks in before
+	 * searching, and adds each new tour (or start with no tour) to.
+	 * @param cache the TourCache, or null for none.
+	 */
+	public void setCache(TourCache cache) {
+		this.cache = cache;
+		if (cache != null) {
+			SolverMonitor.get().watch(cache);
+		}
+	}
+
+	/**
+	 * Returns how much work the last solve (or count) did. The parallel
+	 * solves and counts add up the work of all their threads. A tour that
+	 * was built, cached or loaded took no search, so only its time is
+	 * recorded.
+	 * @return the SearchStats, or null if nothing has been solved.
+	 */
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Returns how the last solve, count or load ended.
+	 * @return the Outcome, or null if solve() has not been called, or if
+	 *         load() found no tour.
+	 */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Returns the strategy used by solve() to search for a tour.
+	 * @return the current Strategy.
+	 */
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Assigns the strategy used by solve() to search for a tour.
+	 * @param strategy the Strategy to use.
+	 */
+	public void setStrategy(Strategy strategy) {
+		if (strategy == null) {
+			throw new IllegalArgumentException("Strategy must not be null.");
+		}
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Sets the rotation of the final Warnsdorff tie-break order that solve()
+	 * tries first (see TourSearch.setTieBreak()).
+	 * @param rotation the first rotation to try, from 0 to 7.
+	 */
+	public void setTieBreak(int rotation) {
+		if (rotation < 0 || rotation >= 8) {
+			throw new IllegalArgumentException(
+			        "Tie-break must be from 0 to 7.");
+		}
+		tieBreak = rotation;
+	}
+
+	/**
+	 * Sets the seed solve() shuffles the moves with, for the RANDOMIZED
+	 * strategy (see TourSearch.setSeed()).
+	 * @param seed the seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Checks if solve() only accepts closed tours.
+	 * @return true if only closed tours are accepted.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Sets whether solve() only accepts closed tours, whose last square is a
+	 * knight's move from the first. The first closed tour found is kept, and
+	 * serves every later start on this board without another search.
+	 * @param closed true to only accept closed tours.
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
+
+	/**
+	 * Searches for a tour starting at (x, y) with the current strategy. The
+	 * search is run by a {@code TourSearch}, which keeps its own stack rather
+	 * than recursing like move() does, so it works on boards of any size.
+	 * If the board has a cache, the tour is looked up there first, and kept
+	 * there once found. The outcome is also kept for getOutcome(), and the
+	 * solve is reported to the SolverMonitor. Any tour left by an earlier
+	 * solve is cleared first, so a start with no tour leaves none behind.
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @param splitDepth the split depth of a parallel search.
+	 * @param pool the pool to split the search across, or null to search on
+	 *            this thread.
+	 * @return how the search ended.
+	 */
+	private Outcome search(int x, int y, int splitDepth, ForkJoinPool pool) {
+		long started = System.nanoTime();
+		reset();
+		active = SolverMonitor.get().begin(W, H, x, y, strategy, closed);
+		try {
+			outcome = lookUp(x, y, splitDepth, pool);
+
+			// nothing was searched (the tour was built, cached or known).
+			if (stats == null) {
+				long finished = System.nanoTime();
+				boolean solved = outcome == Outcome.SOLVED;
+				stats = new SearchStats(0, 0, 0, solved ? M + 1 : 0, started,
+				        finished, solved, finished);
+			}
+		}
+		finally {
+			active.end(outcome, stats);
+			active = null;
+		}
+		return outcome;
+	}
+
+	/**
+	 * Looks up the tour starting at (x, y) in the cache (if any), and finds
+	 * it if it is not there. A tour found by a parallel search depends on
+	 * the race between its subtasks, so it is not kept in the cache.
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @param splitDepth the split depth of a parallel search.
+	 * @param pool the pool to split the search across, or null.
+	 * @return how the search ended.
+	 */
+	private Outcome lookUp(int x, int y, int splitDepth, ForkJoinPool pool) {
+		if (x < 0 || x >= W || y < 0 || y >= H
+		        || !graph.allowsStart(x + y * W)) {
+			return Outcome.NO_TOUR;
+		}
+		if (cache == null) {
+			return find(x, y, splitDepth, pool);
+		}
+		Outcome result = cache.get(W, H, strategy, closed, tieBreak, seed,
+		        x + y * W, path);
+		if (result == Outcome.SOLVED) {
+			setSolution();
+		}
+		else if (result == null) {
+			result = find(x, y, splitDepth, pool);
+			if ((result == Outcome.SOLVED && pool == null)
+			        || result == Outcome.NO_TOUR) {
+				cache.put(W, H, strategy, closed, tieBreak, seed, x + y * W,
+				        result == Outcome.SOLVED ? path : null);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds a tour starting at (x, y) with the current strategy, without
+	 * looking in the cache.
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @param splitDepth the split depth of a parallel search.
+	 * @param pool the pool to split the search across, or null.
+	 * @return how the search ended.
+	 */
+	private Outcome find(int x, int y, int splitDepth, ForkJoinPool pool) {
+		if (strategy == Strategy.CONSTRUCTION
+		        && TourConstruction.supports(W, H)) {
+			new TourConstruction(W, H).walk(x, y, path);
+			setSolution();
+			return Outcome.SOLVED;
+		}
+		if (strategy == Strategy.CONSTRUCTION && !closed
+		        && StripTour.supports(W, H)
+		        && new StripTour(W, H).walk(x, y, path)) {
+			setSolution();
+			return Outcome.SOLVED;
+		}
+		if (closed) {
+			return searchClosed(x, y, splitDepth, pool);
+		}
+		if (pool != null) {
+			return searchParallel(x, y, splitDepth, pool);
+		}
+		TourSearch search = prepareSearch();
+		boolean solved = search.search(x, y);
+		stats = search.getStats();
+		if (solved) {
+			setSolution(search);
+		}
+		return search.getOutcome();
+	}
+
+	/**
+	 * Returns a pruned TourSearch of this board with the current strategy,
+	 * tie-break, seed, token and limits. The same TourSearch is reused
+	 * while the strategy stays the same, so solving a board again (see
+	 * reset()) allocates nothing.
+	 * @return the TourSearch.
+	 */
+	private TourSearch prepareSearch() {
+		if (search == null || search.getStrategy() != strategy) {
+			search = new TourSearch(W, H, strategy);
+		}
+		search.setPruning(true);
+		search.setClosed(closed);
+		search.setCancellationToken(token);
+		search.setTimeLimit(timeLimit);
+		search.setNodeLimit(nodeLimit);
+		search.setTieBreak(tieBreak);
+		search.setSeed(seed);
+		if (active != null) {
+			active.watch(search);
+		}
+		return search;
+	}
+
+	/**
+	 * Finds a closed tour starting at (x, y). Only the first call searches;
+	 * after that the closed tour it found is started from (x, y) instead.
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @param splitDepth the split depth of a parallel search.
+	 * @param pool the pool to split the search across, or null.
+	 * @return how the search ended.
+	 */
+	private Outcome searchClosed(int x, int y, int splitDepth,
+	        ForkJoinPool pool) {
+		if (closedTour == null && pool != null) {
+			Outcome result = searchParallel(x, y, splitDepth, pool);
+			if (result != Outcome.SOLVED) {
+				return result;
+			}
+			closedTour = new ClosedTour(path.clone());
+		}
+		if (closedTour == null) {
+			TourSearch search = prepareSearch();
+			boolean solved = search.search(x, y);
+			stats = search.getStats();
+			if (!solved) {
+				return search.getOutcome();
+			}
+			int[] tour = new int[M + 1];
+			for (int m = 0; m <= M; m++) {
+				tour[m] = search.getSquare(m);
+			}
+			closedTour = new ClosedTour(tour);
+		}
+		closedTour.startingAt(x + y * W, path);
+		setSolution();
+		return Outcome.SOLVED;
+	}
+
+	/**
+	 * Searches for a tour starting at (x, y) with the current strategy, split
+	 * across the threads of the given ForkJoinPool (see ParallelTourSearch),
+	 * within the board's time and node limits.
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @param splitDepth the split depth of the search.
+	 * @param pool the pool to run the search on.
+	 * @return how the search ended.
+	 */
+	private Outcome searchParallel(int x, int y, int splitDepth,
+	        ForkJoinPool pool) {
+		ParallelTourSearch search = new ParallelTourSearch(W, H, strategy,
+		        splitDepth, pool);
+		search.setClosed(closed);
+		search.setCancellationToken(token);
+		search.setTimeLimit(timeLimit);
+		search.setNodeLimit(nodeLimit);
+		int[] tour = search.search(x, y);
+		stats = search.getStats();
+		if (tour != null) {
+			System.arraycopy(tour, 0, path, 0, M + 1);
+			setSolution();
+		}
+		return search.getOutcome();
+	}
+
+	/**
+	 * Searches for a tour starting at (x, y) with the current strategy, split
+	 * across the threads of the common ForkJoinPool.
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @param splitDepth the number of moves to make before each subtask runs
+	 *            the rest of the search on its own (see ParallelTourSearch).
+	 * @return true if a tour was found.
+	 */
+	public boolean solveParallel(int x, int y, int splitDepth) {
+		return solveParallel(x, y, splitDepth, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Searches for a tour starting at (x, y) with the current strategy, split
+	 * across the threads of the given ForkJoinPool. Like solve(), the search
+	 * is bounded by the board's time and node limits and stopped by
+	 * cancel(), it looks in the board's cache first, and getOutcome() tells
+	 * how it ended. The node limit is shared by the subtasks, but those
+	 * running at once may each spend the rest of it before they stop.
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @param splitDepth the number of moves to make before each subtask runs
+	 *            the rest of the search on its own (see ParallelTourSearch).
+	 * @param pool the pool to run the search on.
+	 * @return true if a tour was found.
+	 */
+	public boolean solveParallel(int x, int y, int splitDepth,
+	        ForkJoinPool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("The pool must not be null.");
+		}
+		return search(x, y, splitDepth, pool) == Outcome.SOLVED;
+	}
+
+	/**
+	 * Loads the tour starting at (x, y) from a file of precomputed tours,
+	 * instead of searching for it. Any tour left by an earlier solve is
+	 * cleared first, so if the store has no tour from (x, y), the board is
+	 * left unsolved and getOutcome() returns null. A loaded tour is recorded
+	 * as a solve that took no search.
+	 * @param store the TourStore to read the tour from.
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @return true if the store holds a tour of this board from (x, y).
+	 */
+	public boolean load(TourStore store, int x, int y) {
+		long started = System.nanoTime();
+		reset();
+		if (x < 0 || x >= W || y < 0 || y >= H) {
+			return false;
+		}
+		IntBuffer tour = store.get(W, H, x + y * W);
+		if (tour == null) {
+			return false;
+		}
+		tour.get(path);
+		setSolution();
+		outcome = Outcome.SOLVED;
+		long finished = System.nanoTime();
+		stats = new SearchStats(0, 0, 0, M + 1, started, finished, true,
+		        finished);
+		return true;
+	}
+
+	/**
+	 * Counts every open tour starting at (x, y), on the threads of the common
+	 * ForkJoinPool, within the board's time and node limits. The board's own
+	 * solution is left unchanged, but getOutcome() tells whether the count
+	 * is exact (SOLVED or NO_TOUR) or was stopped first and is only partial
+	 * (TIMED_OUT or CANCELLED).
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @return the number of tours, or the partial total if stopped.
+	 */
+	public long countTours(int x, int y) {
+		TourCounter counter = new TourCounter(W, H, 3,
+		        ForkJoinPool.commonPool());
+		counter.setCancellationToken(token);
+		counter.setTimeLimit(timeLimit);
+		counter.setNodeLimit(nodeLimit);
+		SolverMonitor.Solve solve = SolverMonitor.get().begin(W, H, x, y,
+		        Strategy.BACKTRACKING, false);
+		solve.watch(counter);
+		long tours = 0;
+		outcome = null;
+		stats = null;
+		try {
+			tours = counter.count(x, y);
+			stats = counter.getStats();
+			outcome = counter.getOutcome();
+		}
+		finally {
+			solve.end(outcome, stats);
+		}
+		return tours;
+	}
+
+	/**
+	 * Copies the tour found by a TourSearch into the path, and marks every
+	 * square visited (as move() would leave them).
+	 * @param search the TourSearch that found a tour.
+	 */
+	private void setSolution(TourSearch search) {
+		for (int m = 0; m <= M; m++) {
+			path[m] = search.getSquare(m);
+		}
+		setSolution();
+	}
+
+	/**
+	 * Marks every square of the tour already stored in the path visited (as
+	 * move() would leave them).
+	 */
+	private void setSolution() {
+		for (int m = 0; m <= M; m++) {
+			visited.add(path[m]);
+		}
+		solution = null;
+	}
+
+	/**
+	 * Solves the given board state, within the board's time and node limits.
+	 * The knight's starting position is specified by (x, y).
+	 * @param x The knight's starting x position.
+	 * @param y The knight's starting y position.
+	 * @return SOLVED if a tour was found, NO_TOUR if there is none, or
+	 *         TIMED_OUT or CANCELLED if the search was stopped first.
+	 */
+	public Outcome solve(int x, int y) {
+		return search(x, y, 0, null);
+	}
+
 	/**
 	 * Solves the given board state and prints the results to the terminal. The
 	 * knight's starting position is specified by (x, y).
 	 */
 	public void solve(int x, int y, boolean print) {
 		if (print) {
-			System.out.print("board size:\t" + N + " x " + N
+			System.out.print("board size:\t" + W + " x " + H
 			        + "\nstart position:\t(" + x + ", " + y
 			        + ")\nSolving Knight's Tour ...");
-			if (move(x, y, 0)) {
-				System.out.println("a solution was found.");
-			}
-			else {
-				System.out.println("no solution was found.");
-			}
+			System.out.println(describe(search(x, y, 0, null)));
+			System.out.println(stats);
 		}
 		else {
-			move(x, y, 0);
+			search(x, y, 0, null);
 		}
 	}
 
@@ -347,29 +946,48 @@ public class KnightsTour {
 	 * @param textArea The JTextArea to update with this method.
 	 */
 	public boolean solve(int x, int y, JTextArea textArea) {
-		textArea.append("board size:\t" + N + " x " + N
+		textArea.append("board size:\t" + W + " x " + H
 		        + "\nstart position:\t(" + x + ", " + y
 		        + ")\nSolving Knight's Tour ... ");
-		if (move(x, y, 0)) {
-			textArea.append("a solution was found.\n");
-			return true;
-		}
-		else {
-			textArea.append("no solution was found.\n");
-			return false;
+		Outcome result = search(x, y, 0, null);
+		textArea.append(describe(result) + "\n" + stats + "\n");
+		return result == Outcome.SOLVED;
+	}
+
+	/**
+	 * Describes how a solve ended, for printing.
+	 * @param outcome the Outcome of the solve.
+	 * @return a short sentence.
+	 */
+	private static String describe(Outcome outcome) {
+		switch (outcome) {
+		case SOLVED:
+			return "a solution was found.";
+		case TIMED_OUT:
+			return "the search ran out of time.";
+		case CANCELLED:
+			return "the search was cancelled.";
+		default:
+			return "no solution was found.";
 		}
 	}
 
 	/**
-	 * Prints the board in the order it visited each vertex.
+	 * Prints the board in the order it visited each vertex. The steps are
+	 * streamed out by a TourWriter, so large boards print quickly.
 	 */
 	public void printSteps() {
-		if (solution[0] == null) {
+		if (!isSolved()) {
 			System.out.println("(no solution)");
 		}
 		else {
-			for (int m = 0; m <= M; m++) {
-				System.out.println((m + 1) + ":\t" + solution[m]);
+			TourWriter out = new TourWriter(System.out);
+			try {
+				out.writeSteps(path, W);
+				out.flush();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
 		}
 	}
@@ -379,81 +997,147 @@ public class KnightsTour {
 	 * JTextArea, for convenience in displaying in a GUI.
 	 */
 	public void printSteps(JTextArea textArea) {
-		if (solution[0] == null) {
+		if (!isSolved()) {
 			textArea.append("(no solution)\n");
 		}
 		else {
 			for (int m = 0; m <= M; m++) {
-				textArea.append((m + 1) + ":\t" + solution[m] + "\n");
+				textArea.append((m + 1) + ":\t" + getStepX(m) + ", "
+				        + getStepY(m) + "\n");
 			}
 			textArea.append("\n");
 		}
 	}
 
 	/**
-	 * Access the solution array.
-	 * @return The String[] representing the solution.
+	 * Returns the number of columns of the board.
+	 * @return the width.
+	 */
+	public int getWidth() {
+		return W;
+	}
+
+	/**
+	 * Returns the number of rows of the board.
+	 * @return the height.
+	 */
+	public int getHeight() {
+		return H;
+	}
+
+	/**
+	 * Checks if a tour has been found.
+	 * @return true if the knight's tour has been solved.
+	 */
+	public boolean isSolved() {
+		return path[0] >= 0;
+	}
+
+	/**
+	 * Returns the number of steps in a tour of this board (one per square).
+	 * @return the number of steps.
+	 */
+	public int getStepCount() {
+		return M + 1;
+	}
+
+	/**
+	 * Returns the x position of the knight at step m of the tour.
+	 * @param m the step number, from 0 to getStepCount() - 1.
+	 * @return the x position.
+	 */
+	public int getStepX(int m) {
+		return path[m] % W;
+	}
+
+	/**
+	 * Returns the y position of the knight at step m of the tour.
+	 * @param m the step number, from 0 to getStepCount() - 1.
+	 * @return the y position.
+	 */
+	public int getStepY(int m) {
+		return path[m] / W;
+	}
+
+	/**
+	 * Access the tour as an array of squares: entry m holds x + y * W for the
+	 * knight's position at step m, or -1 if there is no solution. The array
+	 * is not copied, so it must not be modified.
+	 * @return the int[] representing the solution.
+	 */
+	public int[] getPath() {
+		return path;
+	}
+
+	/**
+	 * Access the solution array, where each step is a String of the form
+	 * "x, y". The array is built from the path the first time it is needed.
+	 * @return The String[] representing the solution, holding nulls if there
+	 *         is no solution.
 	 */
 	public String[] getSolution() {
+		if (!isSolved()) {
+			return new String[M + 1];
+		}
+		if (solution == null) {
+			solution = new String[M + 1];
+			for (int m = 0; m <= M; m++) {
+				solution[m] = getStepX(m) + ", " + getStepY(m);
+			}
+		}
 		return solution;
 	}
 
 	/**
 	 * Generate a 2 dimensional integer array that represents the knight's tour.
 	 * Each index of int[x][y] stores the number of the step during which the
-	 * knight visits that position of the grid.
+	 * knight visits that position of the grid, so the array is width x height.
 	 * 
 	 * @return a 2-dimensional int array. This is of size 0x0 if there is no
 	 *         solution.
 	 */
 	public int[][] getTour() {
-		try {
-			// build a temp array to generate solution grid
-			int[][] tour = new int[N][N];
-			for (int m = 0; m <= M; m++) {
-				String[] a = solution[m].split(", ");
-				int x = Integer.parseInt(a[0]);
-				int y = Integer.parseInt(a[1]);
-				tour[x][y] = m;
-			}
-			return tour;
-		}
-
-		// if a null pointer exception occurred, then there is no solution, so
-		// an empty matrix is returned.
-		catch (NullPointerException e) {
+		// if there is no solution, an empty matrix is returned.
+		if (!isSolved()) {
 			return new int[0][0];
 		}
 
+		// build a temp array to generate solution grid
+		int[][] tour = new int[W][H];
+		for (int m = 0; m <= M; m++) {
+			tour[getStepX(m)][getStepY(m)] = m;
+		}
+		return tour;
 	}
 
 	/**
-	 * Prints the board in the order it visited each vertex.
+	 * Prints the board in the order it visited each vertex. The grid is
+	 * streamed out by a TourWriter, without building getTour().
 	 */
 	public void printGrid() {
-		int[][] tour = getTour();
-		// iterate and print it to the terminal.
-		for (int y = 0; y < tour.length; y++) {
-			for (int x = 0; x < tour[y].length; x++) {
-				if (tour[x][y] < 10) {
-					System.out.print(" ");
-				}
-				System.out.print(tour[x][y] + "   ");
-
+		if (isSolved()) {
+			TourWriter out = new TourWriter(System.out);
+			try {
+				out.writeGrid(path, W, H);
+				out.flush();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
-			System.out.println("\n");
 		}
-
 	}
 
 	/**
 	 * Prints the board in the order it visited each vertex.
 	 */
 	public void printGrid(JTextArea textArea) {
+		if (!isSolved()) {
+			return;
+		}
 		int[][] tour = getTour();
 		// iterate and print it to the terminal.
-		for (int y = 0; y < tour.length; y++) {
-			for (int x = 0; x < tour[y].length; x++) {
+		for (int y = 0; y < H; y++) {
+			for (int x = 0; x < W; x++) {
 				if (tour[x][y] < 10) {
 					textArea.append(" ");
 				}
@@ -470,34 +1154,47 @@ public class KnightsTour {
 	// *********************************************************************
 
 	/**
-	 * Note: run code for 5x5 to 7x7 board sizes (maximum) to prevent running
-	 * time from being very long as the growth rate is exponential.
+	 * Note: with the default BACKTRACKING strategy, run code for 5x5 to 7x7
+	 * board sizes (maximum) to prevent running time from being very long as
+	 * the growth rate is exponential. The WARNSDORFF strategy handles much
+	 * larger boards.
 	 * 
 	 * @param args If a single parameter is given, it is interpreted as a single
 	 *            int value to be the size of the grid. If three parameters are
 	 *            given, it is interpreted as 3 int values: size, x, and y;
 	 *            otherwise, it runs on a default size of 5 x 5, and a starting
-	 *            (x, y) position of (0, 0).
+	 *            (x, y) position of (0, 0). Either form may be followed by the
+	 *            name of a Strategy (for example, WARNSDORFF). The size may
+	 *            also be given as width x height (for example, 3x40).
 	 */
 	public static void main(String[] args) {
 		KnightsTour tour;
-		int size, x, y;
-		if (args.length == 1) {
-			size = Integer.parseInt(args[0]);
+		Strategy strategy = Strategy.BACKTRACKING;
+		String size;
+		int x, y;
+		if (args.length == 2 || args.length == 4) {
+			strategy = Strategy.valueOf(args[args.length - 1].toUpperCase());
+		}
+		if (args.length == 1 || args.length == 2) {
+			size = args[0];
 			x = 0;
 			y = 0;
 		}
-		else if (args.length == 3) {
-			size = Integer.parseInt(args[0]);
+		else if (args.length == 3 || args.length == 4) {
+			size = args[0];
 			x = Integer.parseInt(args[1]);
 			y = Integer.parseInt(args[2]);
 		}
 		else {
-			size = 5;
+			size = "5";
 			x = 0;
 			y = 0;
 		}
-		tour = new KnightsTour(size);
+		String[] sides = size.toLowerCase().split("x");
+		int width = Integer.parseInt(sides[0]);
+		int height = sides.length > 1 ? Integer.parseInt(sides[1]) : width;
+		tour = new KnightsTour(width, height);
+		tour.setStrategy(strategy);
 		tour.solve(x, y, true);
 		tour.printSteps();
 		tour.printGrid();
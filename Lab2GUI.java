@@ -62,14 +62,17 @@ public class Lab2GUI implements Runnable {
 
 	// Other fields
 	private final int WINDOW_SIZE = 500;
-	private int SIZE = 5;
-	private int SCALE = WINDOW_SIZE / SIZE;
+	private int BOARD_WIDTH = 5;
+	private int BOARD_HEIGHT = 5;
+	private int SCALE = WINDOW_SIZE / BOARD_WIDTH;
 	private Color COLOR_1;
 	private Color COLOR_2;
 	private int KNIGHT_X;
 	private int KNIGHT_Y;
 	private Color ANIMATION_COLOR;
 	private int WAIT_TIME;
+	private KnightsTour.Strategy STRATEGY = KnightsTour.Strategy.BACKTRACKING;
+	private final TourCache cache = new TourCache(16 << 20); // 16 MB of tours
 
 	// *********************************************************************
 	// MAIN
@@ -218,7 +221,7 @@ public class Lab2GUI implements Runnable {
 		mainPanel.setMinimumSize(MINIMUM_WINDOW_DIMENSION);
 		mainPanel.setBorder(BorderFactory.createRaisedBevelBorder());
 		contentPane.add(mainPanel);
-		setupGrid(5);
+		setupGrid(5, 5);
 		setupTextArea();
 
 	}
@@ -226,17 +229,10 @@ public class Lab2GUI implements Runnable {
 	/**
 	 * Resets the text fields of the grid and the textArea.
 	 */
-	@SuppressWarnings("deprecation")
 	private void resetState() {
-		if (tour != null && tour.getAnimationThread() != null) {
-			// http://docs.oracle.com/javase/8/docs/technotes/guides/concurrency/threadPrimitiveDeprecation.html
-			// http://stackoverflow.com/questions/1283328/are-thread-stop-and-friends-ever-safe-in-java
-			// (try to replace)
-			tour.getAnimationThread().stop();
-			try {
-				Thread.sleep(200);
-			}
-			catch (Exception ex) {}
+		if (tour != null) {
+			// stops any animation, and waits for its thread to finish.
+			tour.cancel();
 		}
 		tour = null;
 		textArea.setText("");
@@ -260,7 +256,7 @@ public class Lab2GUI implements Runnable {
 	 * @param y The y position.
 	 */
 	private void setKnightStartPosition(int x, int y) {
-		if (x < 0 || x >= SIZE || y < 0 || y >= SIZE) {
+		if (x < 0 || x >= BOARD_WIDTH || y < 0 || y >= BOARD_HEIGHT) {
 			throw new IndexOutOfBoundsException();
 		}
 		KNIGHT_X = x;
@@ -281,20 +277,21 @@ public class Lab2GUI implements Runnable {
 
 	/**
 	 * Sets up the grid according to the input size.
-	 * @param size The size of the grid.
+	 * @param width The number of columns of the grid.
+	 * @param height The number of rows of the grid.
 	 */
-	private void setupGrid(int size) {
-		setGridSize(size);
+	private void setupGrid(int width, int height) {
+		setGridSize(width, height);
 		panelDimension = new Dimension(SCALE, SCALE);
-		panels = new KPanel[SIZE * SIZE];
-		for (int y = 0; y < SIZE; y++) {
-			for (int x = 0; x < SIZE; x++) {
+		panels = new KPanel[BOARD_WIDTH * BOARD_HEIGHT];
+		for (int y = 0; y < BOARD_HEIGHT; y++) {
+			for (int x = 0; x < BOARD_WIDTH; x++) {
 				KPanel panel = new KPanel("");
 				panel.setSize(SCALE, SCALE);
 				panel.setPreferredSize(panelDimension);
 				panel.setLabelFont(new Font("SansSerif", Font.PLAIN,
 				        (int) (SCALE / 1.8)));
-				panels[x + y * SIZE] = panel;
+				panels[x + y * BOARD_WIDTH] = panel;
 				// draw step zero where the knight is positioned.
 				if (x == KNIGHT_X && y == KNIGHT_Y) {
 					panel.setLabel(String.valueOf(0));
@@ -305,13 +302,15 @@ public class Lab2GUI implements Runnable {
 
 	/**
 	 * Update the size of the grid display
-	 * @param size The width and depth of the grid. If set to zero, the size is
-	 *            NOT updated.
+	 * @param width The number of columns of the grid. If either size is set to
+	 *            zero, the size is NOT updated.
+	 * @param height The number of rows of the grid.
 	 */
-	private void setGridSize(int size) {
-		if (size != 0) {
-			SIZE = size;
-			SCALE = WINDOW_SIZE / SIZE;
+	private void setGridSize(int width, int height) {
+		if (width != 0 && height != 0) {
+			BOARD_WIDTH = width;
+			BOARD_HEIGHT = height;
+			SCALE = Math.max(1, WINDOW_SIZE / Math.max(width, height));
 		}
 	}
 
@@ -326,11 +325,11 @@ public class Lab2GUI implements Runnable {
 		// setWindowSize(500, 500);
 		setWindowSize(GRID_WINDOW_DIMENSION);
 		mainPanel.removeAll();
-		GridLayout layout = new GridLayout(SIZE, SIZE);
+		GridLayout layout = new GridLayout(BOARD_HEIGHT, BOARD_WIDTH);
 		mainPanel.setLayout(layout); // (rows x columns)
-		for (int y = 0; y < SIZE; y++) {
-			for (int x = 0; x < SIZE; x++) {
-				mainPanel.add(panels[x + y * SIZE]);
+		for (int y = 0; y < BOARD_HEIGHT; y++) {
+			for (int x = 0; x < BOARD_WIDTH; x++) {
+				mainPanel.add(panels[x + y * BOARD_WIDTH]);
 			}
 		}
 		frame.pack();
@@ -406,7 +405,7 @@ public class Lab2GUI implements Runnable {
 		}
 		Color firstColor;
 		Color secondColor;
-		for (int y = 0; y < SIZE; y++) {
+		for (int y = 0; y < BOARD_HEIGHT; y++) {
 			// Alternate starting colors by row
 			if (y % 2 == 0) {
 				firstColor = COLOR_1;
@@ -416,13 +415,13 @@ public class Lab2GUI implements Runnable {
 				firstColor = COLOR_2;
 				secondColor = COLOR_1;
 			}
-			for (int x = 0; x < SIZE; x++) {
+			for (int x = 0; x < BOARD_WIDTH; x++) {
 				// alternate between firstColor & secondColor
 				if (x % 2 == 0) {
-					panels[x + y * SIZE].setDefaultColor(firstColor);
+					panels[x + y * BOARD_WIDTH].setDefaultColor(firstColor);
 				}
 				else {
-					panels[x + y * SIZE].setDefaultColor(secondColor);
+					panels[x + y * BOARD_WIDTH].setDefaultColor(secondColor);
 				}
 			}
 		}
@@ -472,14 +471,26 @@ public class Lab2GUI implements Runnable {
 				boardLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 				p.add(boardLabel);
 
+				JPanel sizePanel = new JPanel();
+				sizePanel.setAlignmentX(Component.CENTER_ALIGNMENT);
+				sizePanel.setLayout(new FlowLayout());
+				p.add(sizePanel);
+
 				// *********************************************
-				// 1.3) - size field
+				// 1.3) - width and height fields
 				// *********************************************
 
-				JTextField sizeField = new JTextField(String.valueOf(5), 2);
-				sizeField.setAlignmentX(Component.CENTER_ALIGNMENT);
-				sizeField.setHorizontalAlignment(JTextField.CENTER);
-				p.add(sizeField);
+				sizePanel.add(new JLabel(" width: "));
+				JTextField widthField = new JTextField(
+				        String.valueOf(BOARD_WIDTH), 2);
+				widthField.setHorizontalAlignment(JTextField.CENTER);
+				sizePanel.add(widthField);
+
+				sizePanel.add(new JLabel(" height: "));
+				JTextField heightField = new JTextField(
+				        String.valueOf(BOARD_HEIGHT), 2);
+				heightField.setHorizontalAlignment(JTextField.CENTER);
+				sizePanel.add(heightField);
 
 				JLabel knightLabel = new JLabel("Knight Position:");
 				knightLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -524,13 +535,17 @@ public class Lab2GUI implements Runnable {
 				// *********************************************
 				if (selection == JOptionPane.OK_OPTION) {
 					try {
-						int size = Integer.parseInt(sizeField.getText());
-						setGridSize(size);
+						int width = Integer.parseInt(widthField.getText());
+						int height = Integer.parseInt(heightField.getText());
+						if (width < 1 || height < 1) {
+							throw new NumberFormatException();
+						}
+						setGridSize(width, height);
 						setKnightStartPosition(
 						        Integer.parseInt(xField.getText()) - 1,
 						        Integer.parseInt(yField.getText()) - 1);
 						resetState();
-						setupGrid(size);
+						setupGrid(width, height);
 						if (gridButton.isSelected()) {
 							drawGrid();
 						}
@@ -543,7 +558,7 @@ public class Lab2GUI implements Runnable {
 
 					catch (NumberFormatException ex) {
 						JOptionPane.showMessageDialog(contentPane,
-						        "Input must be a number.", "Error",
+						        "Input must be a positive number.", "Error",
 						        JOptionPane.ERROR_MESSAGE);
 						this.actionPerformed(e);
 					}
@@ -567,7 +582,7 @@ public class Lab2GUI implements Runnable {
 		menuItem2.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				resetState();
-				setupGrid(SIZE);
+				setupGrid(BOARD_WIDTH, BOARD_HEIGHT);
 				if (gridButton.isSelected()) {
 					drawGrid();
 				}
@@ -644,6 +659,22 @@ public class Lab2GUI implements Runnable {
 			}
 		});
 		topMenu.add(menuItem3);
+		topMenu.add(new JSeparator());
+
+		// 4) - one radio button per solver strategy
+		ButtonGroup strategyGroup = new ButtonGroup();
+		for (final KnightsTour.Strategy strategy : KnightsTour.Strategy
+		        .values()) {
+			JRadioButtonMenuItem button = new JRadioButtonMenuItem(
+			        strategy.getLabel(), strategy == STRATEGY);
+			button.addActionListener(new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					STRATEGY = strategy;
+				}
+			});
+			strategyGroup.add(button);
+			topMenu.add(button);
+		}
 
 		return topMenu;
 	}
@@ -707,7 +738,9 @@ public class Lab2GUI implements Runnable {
 		}
 		frame.pack();
 		repaintContents();
-		tour = new KnightsTour(SIZE);
+		tour = new KnightsTour(BOARD_WIDTH, BOARD_HEIGHT);
+		tour.setStrategy(STRATEGY);
+		tour.setCache(cache);
 		boolean solved = tour.solve(KNIGHT_X, KNIGHT_Y, textArea);
 		if (solved) {
 			tour.printSteps(textArea);
@@ -913,7 +946,7 @@ public class Lab2GUI implements Runnable {
 		drawGrid();
 		frame.pack();
 		repaintContents();
-		tour = new KnightsTour(SIZE);
+		tour = new KnightsTour(BOARD_WIDTH, BOARD_HEIGHT);
 
 		animationSliderPanel = getAnimationSliderPanel();
 		contentPane.add(animationSliderPanel, BorderLayout.SOUTH);
@@ -978,7 +1011,9 @@ public class Lab2GUI implements Runnable {
 		frame.pack();
 
 		repaintContents();
-		tour = new KnightsTour(SIZE);
+		tour = new KnightsTour(BOARD_WIDTH, BOARD_HEIGHT);
+		tour.setStrategy(STRATEGY);
+		tour.setCache(cache);
 		boolean solved = tour.solve(KNIGHT_X, KNIGHT_Y, textArea);
 		if (solved) {
 			tour.printSteps(textArea);
@@ -1009,12 +1044,11 @@ public class Lab2GUI implements Runnable {
 	 *            temporarily highlighted a different color.
 	 */
 	private void drawEachStep(int waitTime) {
-		String[] solution = tour.getSolution();
-		if (solution != null) {
-			for (int i = 0; i < solution.length; i++) {
-				String[] pos = (solution[i].split(", "));
-				int x = Integer.parseInt(pos[0]);
-				int y = Integer.parseInt(pos[1]);
+		if (tour.isSolved()) {
+			for (int i = 0; i < tour.getStepCount() && !tour.isCancelled();
+			        i++) {
+				int x = tour.getStepX(i);
+				int y = tour.getStepY(i);
 
 				// 1) - Animated drawing (updated every step)
 				if (waitTime > 0) {
@@ -1027,10 +1061,10 @@ public class Lab2GUI implements Runnable {
 								prev.setBackground(prev.getDefaultColor());
 								prev.paintAll(prev.getGraphics());
 							}
-							panels[x2 + y2 * SIZE]
-							        .setBackground(ANIMATION_COLOR);
-							panels[x2 + y2 * SIZE].repaint(String.valueOf(i2));
-							prev = panels[x2 + y2 * SIZE];
+							KPanel panel = panels[x2 + y2 * BOARD_WIDTH];
+							panel.setBackground(ANIMATION_COLOR);
+							panel.repaint(String.valueOf(i2));
+							prev = panel;
 						}
 					});
 					try {
@@ -1041,7 +1075,7 @@ public class Lab2GUI implements Runnable {
 
 				// 2) - Regular drawing (updated only at the end)
 				else {
-					panels[x + y * SIZE].setLabel(String.valueOf(i));
+					panels[x + y * BOARD_WIDTH].setLabel(String.valueOf(i));
 				}
 			}
 		}
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@code ParallelTourSearch} splits the search for a tour across the threads
+ * of a {@code ForkJoinPool}. Every way of making the first few moves (the
+ * split depth) becomes an independent subtask, which runs its own
+ * {@code TourSearch} with its own visited squares. The pool's work stealing
+ * keeps every thread busy, and the first subtask to find a tour stops all
+ * the others. So does the first to run out of time, or of moves.
+ * <p>
+ * Since the subtasks race, the tour found may differ from run to run, and
+ * from the tour a sequential search would find.
+ */
+public class ParallelTourSearch {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private final int W;
+	private final int H;
+	private final KnightsTour.Strategy strategy;
+	private final KnightGraph graph;
+	private final int splitDepth;
+	private final ForkJoinPool pool;
+	private final AtomicBoolean stop = new AtomicBoolean(); // stops them all
+	private final AtomicReference<int[]> tour = new AtomicReference<int[]>();
+	private final AtomicLong spent = new AtomicLong(); // moves of subtasks
+	private final Queue<SearchStats> stats =
+	        new ConcurrentLinkedQueue<SearchStats>();
+	private boolean closed;
+	private CancellationToken token;
+	private long timeLimit; // milliseconds for the whole search, or 0
+	private long nodeLimit; // moves for the whole search, or 0
+	private long deadline; // the System.nanoTime() the search times out at
+	private volatile boolean timedOut; // a limit ran out
+	private KnightsTour.Outcome outcome; // how the search ended
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a parallel search over an N x N board, where N = size.
+	 *
+	 * @param size The height and width of the board to search over.
+	 * @param strategy The order each subtask tries its moves in.
+	 * @param splitDepth The number of moves to make before handing the rest
+	 *            of the search to a subtask. Each extra move multiplies the
+	 *            number of subtasks by up to 8.
+	 * @param pool The pool to run the subtasks on.
+	 */
+	public ParallelTourSearch(int size, KnightsTour.Strategy strategy,
+	        int splitDepth, ForkJoinPool pool) {
+		this(size, size, strategy, splitDepth, pool);
+	}
+
+	/**
+	 * Creates a parallel search over a width x height board.
+	 *
+	 * @param width The number of columns of the board.
+	 * @param height The number of rows of the board.
+	 * @param strategy The order each subtask tries its moves in.
+	 * @param splitDepth The number of moves to make before handing the rest
+	 *            of the search to a subtask.
+	 * @param pool The pool to run the subtasks on.
+	 */
+	public ParallelTourSearch(int width, int height,
+	        KnightsTour.Strategy strategy, int splitDepth, ForkJoinPool pool) {
+		if (splitDepth < 0) {
+			throw new IllegalArgumentException(
+			        "Split depth must not be negative.");
+		}
+		W = width;
+		H = height;
+		this.strategy = strategy;
+		this.splitDepth = splitDepth;
+		this.pool = pool;
+		graph = KnightGraph.of(width, height);
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Sets whether to only accept closed tours (see TourSearch.setClosed()).
+	 * @param closed true to search for closed tours only.
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
+
+	/**
+	 * Assigns a token that stops every subtask when it is cancelled.
+	 * @param token the token to check, or null for none.
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		this.token = token;
+	}
+
+	/**
+	 * Limits how long the whole search may run. Each subtask is given the
+	 * time that is left when it starts.
+	 * @param millis the limit in milliseconds, or 0 for none.
+	 */
+	public void setTimeLimit(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException(
+			        "Time limit must not be negative.");
+		}
+		timeLimit = millis;
+	}
+
+	/**
+	 * Limits the number of moves the whole search may make or take back
+	 * (see TourSearch.setNodeLimit()). Each subtask is given the moves that
+	 * are left when it starts, so the subtasks running at once may each
+	 * spend all of them, and the search may try up to one limit per thread
+	 * before it stops.
+	 * @param nodes the limit, or 0 for none.
+	 */
+	public void setNodeLimit(long nodes) {
+		if (nodes < 0) {
+			throw new IllegalArgumentException(
+			        "Node limit must not be negative.");
+		}
+		nodeLimit = nodes;
+	}
+
+	/**
+	 * Returns how the search ended: SOLVED if it found a tour, NO_TOUR if
+	 * every subtask searched all of its moves, TIMED_OUT if the time or
+	 * node limit ran out first, or CANCELLED if the token was cancelled.
+	 * @return the Outcome, or null before the search.
+	 */
+	public KnightsTour.Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Searches for a tour starting at (x, y), and waits for the result. A
+	 * ParallelTourSearch can only be used once.
+	 *
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @return the square (x + y * W) of each step of the tour, or null if no
+	 *         tour was found (see getOutcome() for why).
+	 */
+	public int[] search(int x, int y) {
+		if (x < 0 || x >= W || y < 0 || y >= H
+		        || !graph.allowsStart(x + y * W)) {
+			outcome = KnightsTour.Outcome.NO_TOUR;
+			return null;
+		}
+		deadline = System.nanoTime() + timeLimit * 1000000L;
+		int[] prefix = new int[Math.min(splitDepth + 1, graph.squares)];
+		prefix[0] = x + y * W;
+		pool.invoke(new Subtree(prefix, 1));
+		if (tour.get() != null) {
+			outcome = KnightsTour.Outcome.SOLVED;
+		}
+		else if (timedOut) {
+			outcome = KnightsTour.Outcome.TIMED_OUT;
+		}
+		else if (token != null && token.isCancelled()) {
+			outcome = KnightsTour.Outcome.CANCELLED;
+		}
+		else {
+			outcome = KnightsTour.Outcome.NO_TOUR;
+		}
+		return tour.get();
+	}
+
+	/**
+	 * Returns the statistics of every subtask's search, merged. Each
+	 * subtask counts on its own thread, and the counts are only added up
+	 * here, after the search.
+	 * @return a new SearchStats, empty if search() has not been called.
+	 */
+	public SearchStats getStats() {
+		SearchStats total = new SearchStats();
+		for (SearchStats s : stats) {
+			total.merge(s);
+		}
+		return total;
+	}
+
+	/**
+	 * A Subtree is the part of the search that begins with a given prefix of
+	 * moves. Short prefixes fork one Subtree per open move; full length ones
+	 * run a TourSearch.
+	 */
+	private class Subtree extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] prefix;
+		private final int length;
+
+		Subtree(int[] prefix, int length) {
+			this.prefix = prefix;
+			this.length = length;
+		}
+
+		protected void compute() {
+			if (stop.get() || (token != null && token.isCancelled())) {
+				return;
+			}
+
+			// deep enough: search the rest of this subtree on this thread.
+			if (length == prefix.length) {
+				TourSearch search = new TourSearch(W, H, strategy);
+				search.setStopFlag(stop);
+				search.setCancellationToken(token);
+				search.setClosed(closed);
+				search.setPruning(true);
+				if (!setLimits(search)) {
+					return;
+				}
+				if (search.search(prefix, length)) {
+					int[] squares = new int[graph.squares];
+					for (int m = 0; m < squares.length; m++) {
+						squares[m] = search.getSquare(m);
+					}
+					tour.compareAndSet(null, squares);
+					stop.set(true);
+				}
+				else if (search.getOutcome() == KnightsTour.Outcome.TIMED_OUT) {
+					timeOut();
+				}
+				SearchStats s = search.getStats();
+				spent.addAndGet(s.getNodes() + s.getBacktracks());
+				stats.add(s);
+				return;
+			}
+
+			// otherwise fork one subtask per open move.
+			int s = prefix[length - 1];
+			List<Subtree> tasks = new ArrayList<Subtree>(8);
+			for (int k = graph.first[s]; k < graph.first[s + 1]; k++) {
+				int n = graph.neighbours[k];
+				if (!contains(n)) {
+					int[] child = prefix.clone();
+					child[length] = n;
+					tasks.add(new Subtree(child, length + 1));
+				}
+			}
+			invokeAll(tasks);
+		}
+
+		/**
+		 * Gives the search the time and moves that are left.
+		 * @return false if none are left, so the search should not start.
+		 */
+		private boolean setLimits(TourSearch search) {
+			if (timeLimit > 0) {
+				long left = deadline - System.nanoTime();
+				if (left <= 0) {
+					timeOut();
+					return false;
+				}
+				search.setTimeLimit(Math.max(1, left / 1000000));
+			}
+			if (nodeLimit > 0) {
+				long left = nodeLimit - spent.get();
+				if (left <= 0) {
+					timeOut();
+					return false;
+				}
+				search.setNodeLimit(left);
+			}
+			return true;
+		}
+
+		/**
+		 * Records that a limit ran out, and stops every subtask.
+		 */
+		private void timeOut() {
+			timedOut = true;
+			stop.set(true);
+		}
+
+		/**
+		 * Checks if square n is already part of the prefix.
+		 */
+		private boolean contains(int n) {
+			for (int i = 0; i < length; i++) {
+				if (prefix[i] == n) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@code PortfolioSolver} races several ways of solving the same board
+ * against each other, each on its own thread. How long a search takes
+ * depends heavily on the start square and the move ordering: a start that
+ * sends fixed order backtracking into an exponential search may take
+ * Warnsdorff's rule no time at all, and the tie-break order of Warnsdorff's
+ * rule and the seed of randomized restarts matter almost as much. So each
+ * {@code Entrant} solves its own {@code KnightsTour}, the first to finish
+ * wins, and every other entrant is cancelled through a shared
+ * {@code CancellationToken}.
+ * <p>
+ * Every entrant searches the whole tree if it has to, so the first to
+ * finish settles the question either way: it has found a tour, or there is
+ * none.
+ */
+public class PortfolioSolver {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private final int W;
+	private final int H;
+	private final ExecutorService executor;
+	private final List<Entrant> entrants = new ArrayList<Entrant>();
+	private final AtomicReference<Entrant> winner =
+	        new AtomicReference<Entrant>();
+	private volatile CancellationToken race;
+	private boolean closed;
+	private long timeLimit; // milliseconds per solve, or 0 for none
+	private int[] path;
+	private KnightsTour.Outcome outcome;
+
+	/**
+	 * An {@code Entrant} is one way of solving the board: a strategy, and
+	 * for Warnsdorff's rule, the tie-break rotation to try first, or for
+	 * randomized restarts, the seed.
+	 */
+	public static class Entrant {
+		private final KnightsTour.Strategy strategy;
+		private final int tieBreak;
+		private final long seed;
+
+		/**
+		 * Creates an entrant.
+		 * @param strategy the strategy to solve with.
+		 * @param tieBreak the first tie-break rotation (see
+		 *            TourSearch.setTieBreak()), from 0 to 7.
+		 */
+		public Entrant(KnightsTour.Strategy strategy, int tieBreak) {
+			this(strategy, tieBreak, 1);
+		}
+
+		/**
+		 * Creates an entrant with a seed for randomized restarts.
+		 * @param strategy the strategy to solve with.
+		 * @param tieBreak the first tie-break rotation (see
+		 *            TourSearch.setTieBreak()), from 0 to 7.
+		 * @param seed the seed (see TourSearch.setSeed()).
+		 */
+		public Entrant(KnightsTour.Strategy strategy, int tieBreak,
+		        long seed) {
+			if (strategy == null) {
+				throw new IllegalArgumentException(
+				        "Strategy must not be null.");
+			}
+			if (tieBreak < 0 || tieBreak >= 8) {
+				throw new IllegalArgumentException(
+				        "Tie-break must be from 0 to 7.");
+			}
+			this.strategy = strategy;
+			this.tieBreak = tieBreak;
+			this.seed = seed;
+		}
+
+		/**
+		 * Returns the strategy this entrant solves with.
+		 * @return the Strategy.
+		 */
+		public KnightsTour.Strategy getStrategy() {
+			return strategy;
+		}
+
+		/**
+		 * Returns the first tie-break rotation this entrant tries.
+		 * @return the rotation, from 0 to 7.
+		 */
+		public int getTieBreak() {
+			return tieBreak;
+		}
+
+		/**
+		 * Returns the seed this entrant shuffles its moves with.
+		 * @return the seed.
+		 */
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * Returns a human readable name for this entrant.
+		 * @return the strategy's label, and the seed or tie-break.
+		 */
+		public String toString() {
+			if (strategy == KnightsTour.Strategy.RANDOMIZED) {
+				return strategy.getLabel() + " (seed " + seed + ")";
+			}
+			if (tieBreak == 0) {
+				return strategy.getLabel();
+			}
+			return strategy.getLabel() + " (tie-break " + tieBreak + ")";
+		}
+	}
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a portfolio over a width x height board, with no entrants.
+	 *
+	 * @param width The number of columns of the board.
+	 * @param height The number of rows of the board.
+	 * @param executor The executor to run the entrants on. It needs a thread
+	 *            per entrant for them to race; with fewer, the later
+	 *            entrants wait for the earlier ones to finish.
+	 */
+	public PortfolioSolver(int width, int height, ExecutorService executor) {
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("Size must be at least 1.");
+		}
+		W = width;
+		H = height;
+		this.executor = executor;
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Adds an entrant to the race.
+	 * @param entrant the Entrant to add.
+	 */
+	public void add(Entrant entrant) {
+		entrants.add(entrant);
+	}
+
+	/**
+	 * Adds the default entrants: fixed order backtracking, randomized
+	 * restarts, Warnsdorff's rule with three different tie-break rotations,
+	 * and divide and conquer on the boards it can build.
+	 */
+	public void addDefaults() {
+		if (TourConstruction.supports(W, H) || StripTour.supports(W, H)) {
+			add(new Entrant(KnightsTour.Strategy.CONSTRUCTION, 0));
+		}
+		add(new Entrant(KnightsTour.Strategy.WARNSDORFF, 0));
+		add(new Entrant(KnightsTour.Strategy.WARNSDORFF, 3));
+		add(new Entrant(KnightsTour.Strategy.WARNSDORFF, 5));
+		add(new Entrant(KnightsTour.Strategy.RANDOMIZED, 0, 1));
+		add(new Entrant(KnightsTour.Strategy.BACKTRACKING, 0));
+	}
+
+	/**
+	 * Sets whether to only accept closed tours.
+	 * @param closed true to search for closed tours only.
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
+
+	/**
+	 * Limits how long each solve may run for.
+	 * @param millis the limit in milliseconds, or 0 for none.
+	 */
+	public void setTimeLimit(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException(
+			        "Time limit must not be negative.");
+		}
+		timeLimit = millis;
+	}
+
+	/**
+	 * Cancels the solve in progress, if any. solve() then returns CANCELLED
+	 * once every entrant has stopped.
+	 */
+	public void cancel() {
+		CancellationToken token = race;
+		if (token != null) {
+			token.cancel();
+		}
+	}
+
+	/**
+	 * Races every entrant to solve the board from (x, y), and waits for all
+	 * of them to stop. A PortfolioSolver can only be used once.
+	 *
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @return SOLVED or NO_TOUR as found by the first entrant to finish, or
+	 *         TIMED_OUT or CANCELLED if none finished.
+	 */
+	public KnightsTour.Outcome solve(final int x, final int y) {
+		if (entrants.isEmpty()) {
+			throw new IllegalStateException("There are no entrants.");
+		}
+		final CancellationToken token = new CancellationToken();
+		race = token;
+		List<Future<KnightsTour.Outcome>> results =
+		        new ArrayList<Future<KnightsTour.Outcome>>();
+		for (final Entrant entrant : entrants) {
+			results.add(executor.submit(new Callable<KnightsTour.Outcome>() {
+				public KnightsTour.Outcome call() {
+					return run(entrant, x, y, token);
+				}
+			}));
+		}
+
+		// wait for every entrant, so none is left running after solve().
+		boolean timedOut = false;
+		for (Future<KnightsTour.Outcome> result : results) {
+			try {
+				timedOut |= result.get() == KnightsTour.Outcome.TIMED_OUT;
+			}
+			catch (InterruptedException e) {
+				token.cancel();
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e) {
+				token.cancel();
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		if (outcome == null) {
+			outcome = timedOut ? KnightsTour.Outcome.TIMED_OUT
+			        : KnightsTour.Outcome.CANCELLED;
+		}
+		return outcome;
+	}
+
+	/**
+	 * Runs one entrant. If it is the first to finish, its result is kept
+	 * and the others are cancelled.
+	 */
+	private KnightsTour.Outcome run(Entrant entrant, int x, int y,
+	        CancellationToken token) {
+		if (token.isCancelled()) {
+			return KnightsTour.Outcome.CANCELLED;
+		}
+		KnightsTour tour = new KnightsTour(W, H);
+		tour.setStrategy(entrant.getStrategy());
+		tour.setTieBreak(entrant.getTieBreak());
+		tour.setSeed(entrant.getSeed());
+		tour.setClosed(closed);
+		tour.setTimeLimit(timeLimit);
+		tour.setCancellationToken(token);
+		KnightsTour.Outcome result = tour.solve(x, y);
+		if ((result == KnightsTour.Outcome.SOLVED
+		        || result == KnightsTour.Outcome.NO_TOUR)
+		        && winner.compareAndSet(null, entrant)) {
+			path = result == KnightsTour.Outcome.SOLVED
+			        ? tour.getPath().clone() : null;
+			outcome = result;
+			token.cancel();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the entrant that finished first.
+	 * @return the winning Entrant, or null if none finished.
+	 */
+	public Entrant getWinner() {
+		return winner.get();
+	}
+
+	/**
+	 * Returns the tour found by the winner, as the square (x + y * W) of
+	 * each step.
+	 * @return the tour, or null if none was found.
+	 */
+	public int[] getPath() {
+		return path;
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * {@code SearchStats} records how much work a search did: the moves it
+ * made (nodes), the moves it took back (backtracks), the positions it gave
+ * up on early because they could not lead to a tour (pruned), the longest
+ * path it reached, and when it started, first found a tour, and finished.
+ * This tells a lucky start square from a pathological one.
+ * <p>
+ * Each {@code TourSearch} counts into plain fields of its own, which only
+ * its thread touches, and hands out a {@code SearchStats} when asked. The
+ * parallel searches collect one per subtask and merge them once every
+ * subtask has finished, so the threads never contend over shared counters.
+ * A {@code SearchStats} is not thread safe.
+ */
+public class SearchStats {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private long nodes;
+	private long backtracks;
+	private long pruned;
+	private int maxDepth; // the most squares on the path at once
+	private long started; // the System.nanoTime() of the start
+	private long finished; // the System.nanoTime() of the finish
+	private long firstTour; // the System.nanoTime() of the first tour
+	private boolean found; // true if firstTour is set
+	private int searches; // the number of searches merged into these
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates the statistics of one search.
+	 *
+	 * @param nodes the number of moves made.
+	 * @param backtracks the number of moves taken back.
+	 * @param pruned the number of positions given up on early.
+	 * @param maxDepth the most squares on the path at once.
+	 * @param started the System.nanoTime() the search started at.
+	 * @param finished the System.nanoTime() the search finished at.
+	 * @param found true if the search found a tour.
+	 * @param firstTour the System.nanoTime() the first tour was found at.
+	 */
+	SearchStats(long nodes, long backtracks, long pruned, int maxDepth,
+	        long started, long finished, boolean found, long firstTour) {
+		this.nodes = nodes;
+		this.backtracks = backtracks;
+		this.pruned = pruned;
+		this.maxDepth = maxDepth;
+		this.started = started;
+		this.finished = finished;
+		this.found = found;
+		this.firstTour = firstTour;
+		searches = 1;
+	}
+
+	/**
+	 * Creates empty statistics, to merge others into.
+	 */
+	public SearchStats() {
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Adds the statistics of another search to these. The counts are added,
+	 * the depth is the deeper of the two, and the times span from the
+	 * earlier start to the later finish, so merging the subtasks of one
+	 * parallel search gives the time and first tour of the whole search.
+	 * @param other the SearchStats to add.
+	 */
+	public void merge(SearchStats other) {
+		if (other.searches == 0) {
+			return;
+		}
+		if (searches == 0) {
+			started = other.started;
+			finished = other.finished;
+		}
+		else {
+			started = Math.min(started, other.started);
+			finished = Math.max(finished, other.finished);
+		}
+		if (other.found && (!found || other.firstTour - firstTour < 0)) {
+			firstTour = other.firstTour;
+			found = true;
+		}
+		nodes += other.nodes;
+		backtracks += other.backtracks;
+		pruned += other.pruned;
+		maxDepth = Math.max(maxDepth, other.maxDepth);
+		searches += other.searches;
+	}
+
+	/**
+	 * Returns the number of moves made, not counting the starting square.
+	 * @return the number of nodes visited.
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the number of moves taken back.
+	 * @return the number of backtracks.
+	 */
+	public long getBacktracks() {
+		return backtracks;
+	}
+
+	/**
+	 * Returns the number of positions given up on without trying any move
+	 * from them, because a square had been stranded.
+	 * @return the number of pruned branches.
+	 */
+	public long getPruned() {
+		return pruned;
+	}
+
+	/**
+	 * Returns the most squares the path held at once; a tour holds every
+	 * square of the board.
+	 * @return the maximum depth reached.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the number of searches these statistics cover.
+	 * @return the number of searches merged.
+	 */
+	public int getSearches() {
+		return searches;
+	}
+
+	/**
+	 * Returns how long the search ran for.
+	 * @return the time in nanoseconds.
+	 */
+	public long getNanos() {
+		return finished - started;
+	}
+
+	/**
+	 * Returns how long the search ran before it found its first tour.
+	 * @return the time in nanoseconds, or -1 if no tour was found.
+	 */
+	public long getFirstTourNanos() {
+		return found ? firstTour - started : -1;
+	}
+
+	/**
+	 * Returns the number of nodes visited per second of the search.
+	 * @return the throughput, or 0 if the search took no measurable time.
+	 */
+	public long getNodesPerSecond() {
+		long nanos = getNanos();
+		return nanos > 0 ? (long) (nodes * 1e9 / nanos) : 0;
+	}
+
+	/**
+	 * Describes the statistics, for printing.
+	 * @return the counts, the times in milliseconds and the throughput.
+	 */
+	public String toString() {
+		return "nodes: " + nodes + ", backtracks: " + backtracks
+		        + ", pruned: " + pruned + ", max depth: " + maxDepth
+		        + ", time: " + millis(getNanos()) + " ms, first tour: "
+		        + (found ? millis(getFirstTourNanos()) + " ms" : "none")
+		        + ", nodes/sec: " + getNodesPerSecond();
+	}
+
+	/**
+	 * Formats a time in nanoseconds as milliseconds, to one decimal place.
+	 */
+	private static String millis(long nanos) {
+		return (nanos / 100000) / 10 + "." + (nanos / 100000) % 10;
+	}
+}
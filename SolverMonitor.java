@@ -0,0 +1,477 @@
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * {@code SolverMonitor} keeps live telemetry of the solves running in this
+ * JVM, and publishes it two ways: as Java Flight Recorder events (see
+ * {@code TourEvents}), and as a JMX MXBean (see
+ * {@code SolverMonitorMXBean}). So a long exhaustive run can be watched
+ * with jconsole or jcmd, and profiled with JFR, with no external agents.
+ * <p>
+ * KnightsTour calls begin() as each solve starts and Solve.end() as it
+ * finishes. In between, the solve's {@code TourSearch} (or
+ * {@code TourCounter}) publishes its progress every few thousand moves,
+ * which the monitor samples once a second while a recording runs.
+ * <p>
+ * Telemetry is off unless the system property knightstour.telemetry is
+ * true, since even listening for the flight recorder loads its classes,
+ * which adds about a tenth of a second to a short run. Starting up JFR and
+ * the platform MBean server takes a few hundred milliseconds more, so the
+ * solver never starts either: the first solve only listens for the flight
+ * recorder, and registers the MXBean on a daemon thread. Events are only
+ * built while a recording runs, so without one a solve costs a few counter
+ * updates.
+ */
+public class SolverMonitor implements SolverMonitorMXBean {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	/** The name the MXBean is registered under. */
+	public static final String NAME = "KnightsTour:type=SolverMonitor";
+
+	// the counters kept for each strategy, after one per Outcome.
+	private static final int NODES = KnightsTour.Outcome.values().length;
+
+	private static final SolverMonitor INSTANCE = new SolverMonitor();
+
+	private final Set<Solve> active = ConcurrentHashMap.newKeySet();
+	private final Map<KnightsTour.Strategy, LongAdder[]> counters =
+	        new EnumMap<KnightsTour.Strategy, LongAdder[]>(
+	                KnightsTour.Strategy.class);
+	private final Set<TourCache> caches = Collections.synchronizedSet(
+	        Collections.newSetFromMap(new WeakHashMap<TourCache, Boolean>()));
+	private final AtomicBoolean started = new AtomicBoolean();
+	private volatile boolean recording; // true while a recording runs
+
+	// emits a progress event for each active solve, when JFR asks for one.
+	private final Runnable sampler = new Runnable() {
+		public void run() {
+			for (Solve solve : active) {
+				solve.sample();
+			}
+		}
+	};
+
+	/**
+	 * A {@code Solve} is one solve in progress, from begin() to end().
+	 */
+	public static class Solve {
+		private final int width;
+		private final int height;
+		private final int x;
+		private final int y;
+		private final KnightsTour.Strategy strategy;
+		private final boolean closed;
+		private final long started = System.nanoTime();
+		private final TourEvents.Solve event; // or null if not recording
+		private volatile TourSearch search;
+		private volatile TourCounter counter;
+		private long lastNodes; // as of the last progress sample
+		private long lastSample; // the System.nanoTime() of that sample
+
+		Solve(int width, int height, int x, int y,
+		        KnightsTour.Strategy strategy, boolean closed) {
+			this.width = width;
+			this.height = height;
+			this.x = x;
+			this.y = y;
+			this.strategy = strategy;
+			this.closed = closed;
+			lastSample = started;
+			if (INSTANCE.recording) {
+				TourEvents.SolveStart start = new TourEvents.SolveStart();
+				start.width = width;
+				start.height = height;
+				start.x = x;
+				start.y = y;
+				start.strategy = strategy.name();
+				start.closed = closed;
+				start.commit();
+				event = new TourEvents.Solve();
+				event.begin();
+			}
+			else {
+				event = null;
+			}
+		}
+
+		/**
+		 * Samples the progress of this solve from the given search.
+		 * @param search the TourSearch running the solve.
+		 */
+		public void watch(TourSearch search) {
+			this.search = search;
+		}
+
+		/**
+		 * Samples the progress of this solve from the given count.
+		 * @param counter the TourCounter running the count.
+		 */
+		public void watch(TourCounter counter) {
+			this.counter = counter;
+		}
+
+		/**
+		 * Records that the solve has finished, and how.
+		 * @param outcome how the solve ended, or null if it failed.
+		 * @param stats the work the solve did, or null if unknown.
+		 */
+		public void end(KnightsTour.Outcome outcome, SearchStats stats) {
+			INSTANCE.active.remove(this);
+			if (stats == null) {
+				stats = new SearchStats();
+			}
+			if (outcome != null) {
+				LongAdder[] counts = INSTANCE.counters.get(strategy);
+				counts[outcome.ordinal()].increment();
+				counts[NODES].add(stats.getNodes());
+			}
+			if (event != null) {
+				event.end();
+				if (event.shouldCommit()) {
+					event.width = width;
+					event.height = height;
+					event.x = x;
+					event.y = y;
+					event.strategy = strategy.name();
+					event.closed = closed;
+					event.outcome = outcome == null ? "FAILED"
+					        : outcome.name();
+					event.nodes = stats.getNodes();
+					event.backtracks = stats.getBacktracks();
+					event.pruned = stats.getPruned();
+					event.maxDepth = stats.getMaxDepth();
+					event.commit();
+				}
+			}
+			if (outcome == KnightsTour.Outcome.CANCELLED
+			        && INSTANCE.recording) {
+				TourEvents.Cancelled cancelled = new TourEvents.Cancelled();
+				cancelled.width = width;
+				cancelled.height = height;
+				cancelled.x = x;
+				cancelled.y = y;
+				cancelled.strategy = strategy.name();
+				cancelled.nodes = stats.getNodes();
+				cancelled.commit();
+			}
+		}
+
+		/**
+		 * Returns the moves made or taken back so far.
+		 */
+		private long nodes() {
+			TourSearch s = search;
+			TourCounter c = counter;
+			return s != null ? s.getProgressNodes()
+			        : c != null ? c.getNodesSoFar() : 0;
+		}
+
+		/**
+		 * Returns the squares on the path so far, or 0 for a count.
+		 */
+		private int depth() {
+			TourSearch s = search;
+			return s != null ? s.getProgressDepth() : 0;
+		}
+
+		/**
+		 * Emits a progress event, with the node rate since the last one.
+		 * Only called from the flight recorder's periodic thread.
+		 */
+		private void sample() {
+			TourEvents.Progress progress = new TourEvents.Progress();
+			long now = System.nanoTime();
+			long nodes = nodes();
+			progress.width = width;
+			progress.height = height;
+			progress.x = x;
+			progress.y = y;
+			progress.strategy = strategy.name();
+			progress.depth = depth();
+			progress.nodes = nodes;
+			progress.nodesPerSecond = now > lastSample
+			        ? (long) ((nodes - lastNodes) * 1e9 / (now - lastSample))
+			        : 0;
+			TourCounter c = counter;
+			progress.tours = c != null ? c.getToursSoFar() : 0;
+			progress.commit();
+			lastNodes = nodes;
+			lastSample = now;
+		}
+
+		/**
+		 * Describes the solve, for the MXBean.
+		 * @return the board, start, strategy, time, depth and nodes.
+		 */
+		public String toString() {
+			return width + "x" + height + " (" + x + ", " + y + ") "
+			        + strategy.name() + (closed ? " closed" : "") + ": "
+			        + (System.nanoTime() - started) / 1000000 + " ms, depth "
+			        + depth() + ", " + nodes() + " moves";
+		}
+	}
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates the monitor, with every counter at zero.
+	 */
+	private SolverMonitor() {
+		for (KnightsTour.Strategy strategy : KnightsTour.Strategy.values()) {
+			LongAdder[] counts = new LongAdder[NODES + 1];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = new LongAdder();
+			}
+			counters.put(strategy, counts);
+		}
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Returns the monitor of this JVM, starting its telemetry (in the
+	 * background) the first time, if it is turned on.
+	 * @return the SolverMonitor.
+	 */
+	public static SolverMonitor get() {
+		if (!INSTANCE.started.get()) {
+			INSTANCE.start();
+		}
+		return INSTANCE;
+	}
+
+	/**
+	 * Records that a solve has started. Its Solve must be ended once the
+	 * solve finishes, however it finishes.
+	 *
+	 * @param width the number of columns of the board.
+	 * @param height the number of rows of the board.
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @param strategy the strategy the solve uses.
+	 * @param closed true if the solve only accepts closed tours.
+	 * @return the Solve to end.
+	 */
+	public Solve begin(int width, int height, int x, int y,
+	        KnightsTour.Strategy strategy, boolean closed) {
+		Solve solve = new Solve(width, height, x, y, strategy, closed);
+		active.add(solve);
+		return solve;
+	}
+
+	/**
+	 * Adds a cache to the statistics of the MXBean. The monitor does not
+	 * keep the cache from being garbage collected.
+	 * @param cache the TourCache to watch.
+	 */
+	public void watch(TourCache cache) {
+		caches.add(cache);
+	}
+
+	/**
+	 * Starts the telemetry, if it is turned on. Listening for the
+	 * flight recorder is cheap, and is done right away so that a recording
+	 * started with the JVM sees the first solve. Registering the MXBean is
+	 * not, so it is left to a daemon thread.
+	 */
+	private void start() {
+		if (!started.compareAndSet(false, true)
+		        || !Boolean.getBoolean("knightstour.telemetry")) {
+			return;
+		}
+		FlightRecorder.addListener(new FlightRecorderListener() {
+			public void recorderInitialized(FlightRecorder recorder) {
+				FlightRecorder.addPeriodicEvent(TourEvents.Progress.class,
+				        sampler);
+				recording = isRunning(recorder);
+			}
+
+			public void recordingStateChanged(Recording changed) {
+				recording = isRunning(FlightRecorder.getFlightRecorder());
+			}
+		});
+		Thread thread = new Thread("Knight's Tour telemetry") {
+			public void run() {
+				register();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Checks if any recording of the flight recorder is running.
+	 */
+	private static boolean isRunning(FlightRecorder recorder) {
+		for (Recording recording : recorder.getRecordings()) {
+			if (recording.getState() == RecordingState.RUNNING) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Registers the MXBean on the platform MBean server.
+	 */
+	private void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+			        new ObjectName(NAME));
+		}
+		catch (Exception e) {
+			// already registered (by another class loader); carry on
+			// without it.
+		}
+	}
+
+	// *********************************************************************
+	// SolverMonitorMXBean
+	// *********************************************************************
+
+	public int getActiveSolves() {
+		return active.size();
+	}
+
+	public String[] getActiveSolveDetails() {
+		Solve[] solves = active.toArray(new Solve[0]);
+		String[] details = new String[solves.length];
+		for (int i = 0; i < solves.length; i++) {
+			details[i] = solves[i].toString();
+		}
+		return details;
+	}
+
+	public Map<String, Long> getSolves() {
+		Map<String, Long> totals = new LinkedHashMap<String, Long>();
+		for (Map.Entry<KnightsTour.Strategy, LongAdder[]> e : counters
+		        .entrySet()) {
+			long sum = 0;
+			for (int i = 0; i < NODES; i++) {
+				sum += e.getValue()[i].sum();
+			}
+			totals.put(e.getKey().name(), sum);
+		}
+		return totals;
+	}
+
+	public Map<String, Long> getSolved() {
+		return counts(KnightsTour.Outcome.SOLVED.ordinal());
+	}
+
+	public Map<String, Long> getNoTour() {
+		return counts(KnightsTour.Outcome.NO_TOUR.ordinal());
+	}
+
+	public Map<String, Long> getTimedOut() {
+		return counts(KnightsTour.Outcome.TIMED_OUT.ordinal());
+	}
+
+	public Map<String, Long> getCancelled() {
+		return counts(KnightsTour.Outcome.CANCELLED.ordinal());
+	}
+
+	public Map<String, Long> getNodes() {
+		return counts(NODES);
+	}
+
+	public long getCacheHits() {
+		long sum = 0;
+		for (TourCache cache : caches()) {
+			sum += cache.getHits();
+		}
+		return sum;
+	}
+
+	public long getCacheSymmetricHits() {
+		long sum = 0;
+		for (TourCache cache : caches()) {
+			sum += cache.getSymmetricHits();
+		}
+		return sum;
+	}
+
+	public long getCacheMisses() {
+		long sum = 0;
+		for (TourCache cache : caches()) {
+			sum += cache.getMisses();
+		}
+		return sum;
+	}
+
+	public long getCacheEntries() {
+		long sum = 0;
+		for (TourCache cache : caches()) {
+			sum += cache.size();
+		}
+		return sum;
+	}
+
+	public long getCacheBytes() {
+		long sum = 0;
+		for (TourCache cache : caches()) {
+			sum += cache.getBytes();
+		}
+		return sum;
+	}
+
+	public long getCacheEvictions() {
+		long sum = 0;
+		for (TourCache cache : caches()) {
+			sum += cache.getEvictions();
+		}
+		return sum;
+	}
+
+	public void resetCounters() {
+		for (LongAdder[] counts : counters.values()) {
+			for (LongAdder count : counts) {
+				count.reset();
+			}
+		}
+	}
+
+	/**
+	 * Returns one of the counters of each strategy, by strategy name.
+	 */
+	private Map<String, Long> counts(int index) {
+		Map<String, Long> totals = new LinkedHashMap<String, Long>();
+		for (Map.Entry<KnightsTour.Strategy, LongAdder[]> e : counters
+		        .entrySet()) {
+			totals.put(e.getKey().name(), e.getValue()[index].sum());
+		}
+		return totals;
+	}
+
+	/**
+	 * Returns a copy of the caches watched, to sum over without holding
+	 * their lock.
+	 */
+	private TourCache[] caches() {
+		synchronized (caches) {
+			return caches.toArray(new TourCache[0]);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+import java.util.Map;
+
+/**
+ * {@code SolverMonitorMXBean} is the management interface of the
+ * {@code SolverMonitor}, registered as "KnightsTour:type=SolverMonitor" on
+ * the platform MBean server, so a running job can be watched with JConsole,
+ * VisualVM or any other JMX client. The counters cover every solve since the
+ * JVM started (or since resetCounters()), keyed by strategy name.
+ */
+public interface SolverMonitorMXBean {
+
+	/**
+	 * Returns the number of solves running right now.
+	 * @return the number of active solves.
+	 */
+	int getActiveSolves();
+
+	/**
+	 * Describes each solve running right now: its board, start and
+	 * strategy, how long it has run, and its depth and the moves it has
+	 * made or taken back so far.
+	 * @return one line per active solve.
+	 */
+	String[] getActiveSolveDetails();
+
+	/**
+	 * Returns the number of solves finished, by strategy.
+	 * @return the counts.
+	 */
+	Map<String, Long> getSolves();
+
+	/**
+	 * Returns the number of solves that found a tour, by strategy.
+	 * @return the counts.
+	 */
+	Map<String, Long> getSolved();
+
+	/**
+	 * Returns the number of solves that found there is no tour, by strategy.
+	 * @return the counts.
+	 */
+	Map<String, Long> getNoTour();
+
+	/**
+	 * Returns the number of solves that ran out of time, by strategy.
+	 * @return the counts.
+	 */
+	Map<String, Long> getTimedOut();
+
+	/**
+	 * Returns the number of solves that were cancelled, by strategy.
+	 * @return the counts.
+	 */
+	Map<String, Long> getCancelled();
+
+	/**
+	 * Returns the moves made by the solves finished, by strategy.
+	 * @return the numbers of nodes visited.
+	 */
+	Map<String, Long> getNodes();
+
+	/**
+	 * Returns the lookups that found a stored tour, over every cache in use.
+	 * @return the number of hits.
+	 */
+	long getCacheHits();
+
+	/**
+	 * Returns the hits served by a turn or flip of a stored tour, over every
+	 * cache in use.
+	 * @return the number of symmetric hits.
+	 */
+	long getCacheSymmetricHits();
+
+	/**
+	 * Returns the lookups that found nothing stored, over every cache in use.
+	 * @return the number of misses.
+	 */
+	long getCacheMisses();
+
+	/**
+	 * Returns the tours stored, over every cache in use.
+	 * @return the number of entries.
+	 */
+	long getCacheEntries();
+
+	/**
+	 * Returns the memory the stored tours take up, over every cache in use.
+	 * @return the number of bytes.
+	 */
+	long getCacheBytes();
+
+	/**
+	 * Returns the entries dropped to keep within the size limits, over every
+	 * cache in use.
+	 * @return the number of evictions.
+	 */
+	long getCacheEvictions();
+
+	/**
+	 * Sets every per-strategy counter back to zero. The solves running and
+	 * the caches' own statistics are not affected.
+	 */
+	void resetCounters();
+}
@@ -0,0 +1,153 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@code StartSweep} solves or counts the tours from every starting square of
+ * a board. It only searches from the canonical square of each equivalence
+ * class under the board's {@code BoardSymmetry}, and maps the result to the
+ * other squares of the class, so a sweep of an N x N board runs about an
+ * eighth as many searches as solving each square on its own.
+ */
+public class StartSweep {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private final int W;
+	private final int H;
+	private final KnightsTour.Strategy strategy;
+	private final KnightGraph graph;
+	private final BoardSymmetry symmetry;
+	private boolean closed;
+	private int searches;
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a sweep over an N x N board, where N = size.
+	 *
+	 * @param size The height and width of the board to sweep.
+	 * @param strategy The order to try the moves in.
+	 */
+	public StartSweep(int size, KnightsTour.Strategy strategy) {
+		this(size, size, strategy);
+	}
+
+	/**
+	 * Creates a sweep over a width x height board.
+	 *
+	 * @param width The number of columns of the board.
+	 * @param height The number of rows of the board.
+	 * @param strategy The order to try the moves in.
+	 */
+	public StartSweep(int width, int height, KnightsTour.Strategy strategy) {
+		W = width;
+		H = height;
+		this.strategy = strategy;
+		graph = KnightGraph.of(width, height);
+		symmetry = new BoardSymmetry(width, height);
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Sets whether solveAll() finds closed tours. A single closed tour serves
+	 * every square, so a closed sweep runs only one search.
+	 * @param closed true to find closed tours.
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
+
+	/**
+	 * Finds a tour from every square of the board.
+	 * @return the tour from each square s (x + y * W), as the square of each
+	 *         step, or null where there is no tour.
+	 */
+	public int[][] solveAll() {
+		int[][] tours = new int[graph.squares][];
+		if (closed) {
+			int[] tour = solve(0);
+			if (tour != null) {
+				ClosedTour cycle = new ClosedTour(tour);
+				for (int s = 0; s < graph.squares; s++) {
+					tours[s] = cycle.startingAt(s);
+				}
+			}
+			return tours;
+		}
+		for (int s = 0; s < graph.squares; s++) {
+			int t = symmetry.toCanonical(s);
+			int c = symmetry.map(t, s);
+			if (c == s) {
+				tours[s] = solve(s);
+			}
+
+			// c < s, so it has already been solved; map its tour back to s.
+			else if (tours[c] != null) {
+				tours[s] = symmetry.map(symmetry.inverse(t), tours[c]);
+			}
+		}
+		return tours;
+	}
+
+	/**
+	 * Counts the open tours from every square of the board. Symmetric
+	 * squares have the same number of tours, so only canonical squares are
+	 * counted.
+	 * @param splitDepth the split depth of each TourCounter.
+	 * @param pool the pool to run each count on.
+	 * @return the number of tours from each square s (x + y * W).
+	 */
+	public long[] countAll(int splitDepth, ForkJoinPool pool) {
+		long[] counts = new long[graph.squares];
+		for (int s = 0; s < graph.squares; s++) {
+			int c = symmetry.canonical(s);
+			if (c == s) {
+				searches++;
+				counts[s] = new TourCounter(W, H, splitDepth, pool).count(
+				        s % W, s / W);
+			}
+			else {
+				// c < s, so it has already been counted.
+				counts[s] = counts[c];
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the number of searches (or counts) run by this sweep so far.
+	 * @return the number of canonical squares searched.
+	 */
+	public int getSearchCount() {
+		return searches;
+	}
+
+	/**
+	 * Searches for a tour from square s.
+	 * @param s the square (x + y * W).
+	 * @return the tour, or null if there is none.
+	 */
+	private int[] solve(int s) {
+		searches++;
+		if (!graph.allowsStart(s)) {
+			return null;
+		}
+		TourSearch search = new TourSearch(W, H, strategy);
+		search.setClosed(closed);
+		search.setPruning(true);
+		if (!search.search(s % W, s / W)) {
+			return null;
+		}
+		int[] tour = new int[graph.squares];
+		for (int m = 0; m < tour.length; m++) {
+			tour[m] = search.getSquare(m);
+		}
+		return tour;
+	}
+}
@@ -0,0 +1,661 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code StripTour} builds open tours of long, narrow boards, 3 or 4 squares
+ * across, without searching them. Warnsdorff's rule does badly on these
+ * strips, since from many starts it walks into a corner it cannot leave, but
+ * their tours are very regular and can be put together from a few small
+ * pieces, in time linear in the number of squares.
+ * <p>
+ * The strip is cut into body blocks 4 squares long, with a cap at each end
+ * and one block that holds the start. Each body block is covered by two
+ * lanes: lane A, which crosses it away from the start block, and lane B,
+ * which crosses it back. Every lane ends a knight's move from where the same
+ * lane starts in the next block, so the lanes run the length of the strip,
+ * and each end cap is a U-turn from lane A into lane B. When the start block
+ * is a cap at one end, the tour leaves it along lane A, turns in the far cap,
+ * and finishes back in it along lane B. Otherwise the start block has body
+ * blocks on both sides, and the tour goes out and back on one side, then out
+ * and back on the other, to finish in the start block.
+ * <p>
+ * Each piece is found once, by an exhaustive search of its block alone, and
+ * is shared by every strip. The start block can be several lengths, and the
+ * strip can be flipped, so most starts fit some cut; walk() returns false
+ * for those that do not, so that the caller can fall back to a search.
+ * <p>
+ * Strips 4 squares across are built another way, since from a start in the
+ * middle their tours must cross one side three times, which two lanes cannot
+ * do. A knight on an outer row moves to an inner row, so a tour alternates
+ * between them, and starts on an outer row. It covers one half of the strip
+ * first: the outer squares of the start's colour and the inner squares of
+ * the other colour, one of each in every column. Then it makes the one move
+ * between inner rows, and covers the other half. In each half, an outer
+ * square and an inner square are a move apart when their columns are 1 or 2
+ * apart, so a path through a half is just a sequence of columns, and is
+ * built from a few fixed runs.
+ */
+public class StripTour {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private static final int BODY = 4; // the length of a body block
+	private static final int MAX_CAP = 2 * BODY + 2; // the longest cap tried
+	private static final long NODE_LIMIT = 1L << 16; // per piece search
+
+	// the kinds of piece
+	private static final int BODY_LANES = 0;
+	private static final int START_CAP = 1;
+	private static final int END_CAP = 2;
+	private static final int MIDDLE = 3;
+
+	// the columns of paths through one half of a 4-row strip, from an outer
+	// square to an inner square a move from the outer square of the next
+	// column along: runs of 3, 4 and 5 columns from the first column, and
+	// runs of 3 columns from the second or third
+	private static final int[][] RUNS = { null, null, null,
+	        { 0, 1, 2, 0, 1, 2 }, { 0, 1, 3, 2, 1, 0, 2, 3 },
+	        { 0, 1, 2, 0, 1, 3, 4, 2, 3, 4 } };
+	private static final int[][] STARTS = { null, { 1, 0, 2, 1, 0, 2 },
+	        { 2, 0, 1, 2, 0, 1 } };
+
+	private static final int[][] NONE = new int[0][];
+	private static final Map<Long, int[][]> PIECES =
+	        new HashMap<Long, int[][]>();
+
+	private final int width;
+	private final int height;
+	private final int rows; // the short side
+	private final int length; // the long side
+	private final BoardSymmetry symmetry; // of the strip, laid out lengthwise
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a StripTour for a width x height board.
+	 *
+	 * @param width the number of columns.
+	 * @param height the number of rows.
+	 */
+	public StripTour(int width, int height) {
+		if (!supports(width, height)) {
+			throw new IllegalArgumentException(
+			        "The board must be 3 or 4 squares across, and at least "
+			                + (BODY + 2) + " long.");
+		}
+		this.width = width;
+		this.height = height;
+		rows = Math.min(width, height);
+		length = Math.max(width, height);
+		symmetry = new BoardSymmetry(length, rows);
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Checks if a board is a strip that a StripTour can build tours of.
+	 * @param width the number of columns.
+	 * @param height the number of rows.
+	 * @return true if the short side is 3 or 4, and the long side is long
+	 *         enough to hold two caps and a body block.
+	 */
+	public static boolean supports(int width, int height) {
+		int rows = Math.min(width, height);
+		return (rows == 3 || rows == 4)
+		        && Math.max(width, height) >= BODY + 2;
+	}
+
+	/**
+	 * Stores an open tour starting at (x, y) into path.
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @param path the array to store the square (x + y * width) of each step
+	 *            into.
+	 * @return true if a tour was built, or false if no cut of the strip fits
+	 *         this start.
+	 */
+	public boolean walk(int x, int y, int[] path) {
+		int s = width >= height ? x + y * length : y + x * length;
+		if (rows == 4) {
+			return walkHalves(s % length, s / length, path);
+		}
+		if (piece(rows, BODY_LANES, BODY, 0) == null) {
+			return false;
+		}
+		for (int t = 0; t < symmetry.getCount(); t++) {
+			if (layOut(symmetry.map(t, s), t, path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Lays out the tour of a 4-row strip: through the half of the strip that
+	 * holds the start, to an inner square in the first or last column, and
+	 * then through the other half, from the inner square 2 columns in.
+	 * @param x the start's column, on the strip laid out lengthwise.
+	 * @param y the start's row.
+	 * @param path the array to store the tour into.
+	 * @return true if a tour was laid out, or false if the start is on an
+	 *         inner row, where no open tour starts.
+	 */
+	private boolean walkHalves(int x, int y, int[] path) {
+		if (y == 1 || y == 2) {
+			return false;
+		}
+		int colour = (x + y) % 2;
+		int[] columns = new int[2 * length];
+		half(x, columns);
+		int m = lay(columns, colour, true, path, 0);
+		half(columns[columns.length - 1] == 0 ? 2 : length - 3, columns);
+		lay(columns, 1 - colour, false, path, m);
+		return true;
+	}
+
+	/**
+	 * Stores the columns of a path through one half of the strip into
+	 * columns, from the outer square of column s to the inner square of the
+	 * first or last column. The path turns at the end nearer the start, if
+	 * the start is 3 or more columns from it, and then runs to the far end.
+	 */
+	private void half(int s, int[] columns) {
+		int r = length - 1 - s;
+		boolean mirror = s == 0 || r == 1 || r == 2;
+		int near = mirror ? r : s;
+		int i;
+		int c;
+		if (near < 3) {
+			i = run(STARTS[near], 0, columns, 0);
+			c = 3;
+		}
+		else {
+			i = turn(near, columns);
+			c = near + 1;
+		}
+		while (c < length) {
+			int w = length - c == 4 || length - c == 5 ? length - c : 3;
+			i = run(RUNS[w], c, columns, i);
+			c += w;
+		}
+		if (mirror) {
+			for (i = 0; i < columns.length; i++) {
+				columns[i] = length - 1 - columns[i];
+			}
+		}
+	}
+
+	/**
+	 * Stores the columns of a path through columns 0 to m of one half of the
+	 * strip, from the outer square of column m back to its inner square, into
+	 * the start of columns. The path runs to column 0 and back twice, moving
+	 * 2 columns at a time, along the 4 chains of squares such moves make.
+	 * @param m the last column, at least 3.
+	 * @return the index after the last column stored.
+	 */
+	private static int turn(int m, int[] columns) {
+		int a = m % 2 == 1 ? m : m - 1; // the last odd column
+		int i = 0;
+		if (a < m) {
+			columns[i++] = m;
+		}
+		i = chain(a, 1, columns, i);
+		i = chain(0, a - 1, columns, i);
+		i = chain(a - 2, 1, columns, i);
+		i = chain(0, a - 1, columns, i);
+		if (a < m) {
+			columns[i++] = a;
+		}
+		columns[i++] = m;
+		return i;
+	}
+
+	/**
+	 * Stores the columns from a to b, 2 apart, into columns at index i.
+	 * @return the index after the last column stored.
+	 */
+	private static int chain(int a, int b, int[] columns, int i) {
+		int step = a <= b ? 2 : -2;
+		for (int c = a; c != b + step; c += step) {
+			columns[i++] = c;
+		}
+		return i;
+	}
+
+	/**
+	 * Stores the columns of a run, moved along to start at column c, into
+	 * columns at index i.
+	 * @return the index after the last column stored.
+	 */
+	private static int run(int[] run, int c, int[] columns, int i) {
+		for (int r : run) {
+			columns[i++] = c + r;
+		}
+		return i;
+	}
+
+	/**
+	 * Copies the squares of a path through one half of the strip into path.
+	 * The squares in the path alternate between outer and inner rows, and in
+	 * each column, the half holds the outer square of one colour and the
+	 * inner square of the other.
+	 * @param columns the column of each square.
+	 * @param colour the colour of the half's outer squares.
+	 * @param outer true if the path starts on an outer row.
+	 * @return the index after the last square copied.
+	 */
+	private int lay(int[] columns, int colour, boolean outer, int[] path,
+	        int m) {
+		for (int i = 0; i < columns.length; i++) {
+			int x = columns[i];
+			boolean same = x % 2 == colour;
+			int y;
+			if (outer == (i % 2 == 0)) {
+				y = same ? 0 : 3;
+			}
+			else {
+				y = same ? 1 : 2;
+			}
+			path[m++] = width >= height ? x + y * width : y + x * width;
+		}
+		return m;
+	}
+
+	/**
+	 * Tries the cuts of the strip that put the start in a start cap at the
+	 * left end, and then those that put it in a middle block, and lays out
+	 * the tour of the first one that has pieces to fit.
+	 * @param s the start, on the strip flipped by symmetry t.
+	 * @param t the symmetry to undo on each square.
+	 * @param path the array to store the tour into.
+	 * @return true if a tour was laid out.
+	 */
+	private boolean layOut(int s, int t, int[] path) {
+		int x = s % length;
+		int y = s / length;
+		for (int left = x + 1; left <= MAX_CAP; left++) {
+			int right = length - left;
+			int[][] start = piece(rows, START_CAP, left, x + y * left);
+			if (start != null && endCap(right) > 0) {
+				int m = copy(start[0], 0, left, false, t, path, 0);
+				m = out(left, right, false, t, path, m);
+				m = back(left, right, false, t, path, m);
+				copy(start[1], 0, left, false, t, path, m);
+				return true;
+			}
+		}
+		for (int w = 1; w <= MAX_CAP; w++) {
+			for (int left = Math.max(0, x - w + 1); left <= x; left++) {
+				int right = length - left - w;
+				if (endCap(left) < 0 || endCap(right) < 0) {
+					continue;
+				}
+				int[][] middle = piece(rows, MIDDLE, w, x - left + y * w);
+				if (middle != null) {
+					int m = copy(middle[0], left, w, false, t, path, 0);
+					m = out(left - 1, left, true, t, path, m);
+					m = back(left - 1, left, true, t, path, m);
+					m = copy(middle[1], left, w, false, t, path, m);
+					m = out(left + w, right, false, t, path, m);
+					m = back(left + w, right, false, t, path, m);
+					copy(middle[2], left, w, false, t, path, m);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the length of the end cap that, with one or more body blocks,
+	 * fills part of the strip.
+	 * @param part the length of the part.
+	 * @return the length of the end cap, or -1 if there is none to fit.
+	 */
+	private int endCap(int part) {
+		for (int r = 1; r <= MAX_CAP && r + BODY <= part; r++) {
+			if ((part - r) % BODY == 0 && piece(rows, END_CAP, r, 0) != null) {
+				return r;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Copies lane A of the body blocks of part of the strip into path,
+	 * followed by its end cap.
+	 * @param origin the column next to the start block that the part starts
+	 *            at.
+	 * @param part the length of the part.
+	 * @param mirror true if the part lies to the left of the start block.
+	 * @return the index after the last square copied.
+	 */
+	private int out(int origin, int part, boolean mirror, int t, int[] path,
+	        int m) {
+		int[][] body = piece(rows, BODY_LANES, BODY, 0);
+		int r = endCap(part);
+		int blocks = (part - r) / BODY;
+		int step = mirror ? -BODY : BODY;
+		for (int i = 0; i < blocks; i++) {
+			m = copy(body[0], origin + i * step, BODY, mirror, t, path, m);
+		}
+		return copy(piece(rows, END_CAP, r, 0)[0], origin + blocks * step, r,
+		        mirror, t, path, m);
+	}
+
+	/**
+	 * Copies lane B of the body blocks of part of the strip into path, from
+	 * the end cap back to the start block.
+	 * @see #out(int, int, boolean, int, int[], int)
+	 */
+	private int back(int origin, int part, boolean mirror, int t, int[] path,
+	        int m) {
+		int[][] body = piece(rows, BODY_LANES, BODY, 0);
+		int step = mirror ? -BODY : BODY;
+		for (int i = (part - endCap(part)) / BODY - 1; i >= 0; i--) {
+			m = copy(body[1], origin + i * step, BODY, mirror, t, path, m);
+		}
+		return m;
+	}
+
+	/**
+	 * Copies the squares of one piece into path, moving them from a block w
+	 * squares long to the part of the strip that starts at column origin
+	 * (and runs to the left if mirror is true), and undoing symmetry t.
+	 * @return the index after the last square copied.
+	 */
+	private int copy(int[] piece, int origin, int w, boolean mirror, int t,
+	        int[] path, int m) {
+		for (int s : piece) {
+			int x = mirror ? origin - s % w : origin + s % w;
+			int strip = symmetry.map(symmetry.inverse(t), x + s / w * length);
+			x = strip % length;
+			int y = strip / length;
+			path[m++] = width >= height ? x + y * width : y + x * width;
+		}
+		return m;
+	}
+
+	/**
+	 * Returns a piece, searching for it only the first time.
+	 *
+	 * @param rows the number of rows of the strip.
+	 * @param kind the kind of piece.
+	 * @param w the length of its block.
+	 * @param s the start, for a start cap or middle block.
+	 * @return the squares (x + y * w) of each path of the piece, in order,
+	 *         or null if the block has no such piece.
+	 */
+	private static int[][] piece(int rows, int kind, int w, int s) {
+		Long key = ((long) rows << 48) | ((long) kind << 40)
+		        | ((long) w << 32) | s;
+		synchronized (PIECES) {
+			int[][] piece = PIECES.get(key);
+			if (piece == null) {
+				piece = kind == BODY_LANES ? findBody(rows)
+				        : find(rows, kind, w, s,
+				                piece(rows, BODY_LANES, BODY, 0));
+				PIECES.put(key, piece == null ? NONE : piece);
+			}
+			return piece == NONE ? null : piece;
+		}
+	}
+
+	/**
+	 * Searches for the two lanes of a body block. The ends of the lanes may
+	 * be any squares that join up from block to block; of those, the lanes
+	 * with end caps of the most different lengths (modulo BODY) are chosen,
+	 * so that the most lengths of strip can be cut.
+	 */
+	private static int[][] findBody(int rows) {
+		int squares = BODY * rows;
+		int[][] best = null;
+		int bestLengths = 0;
+		for (int eA = 0; eA < squares; eA++) {
+			for (int xA = 0; xA < squares; xA++) {
+				if (!joins(xA, BODY, eA % BODY + BODY, eA / BODY)) {
+					continue;
+				}
+				for (int eB = 0; eB < squares; eB++) {
+					for (int xB = 0; xB < squares; xB++) {
+						if (!joins(eB, BODY, xB % BODY + BODY, xB / BODY)) {
+							continue;
+						}
+						int[][] body = cover(BODY, rows, new int[] { eA, eB },
+						        new int[] { xA, xB });
+						if (body == null) {
+							continue;
+						}
+						int lengths = 0;
+						for (int w = 1; w <= MAX_CAP; w++) {
+							if (find(rows, END_CAP, w, 0, body) != null) {
+								lengths |= 1 << w % BODY;
+							}
+						}
+						if (Integer.bitCount(lengths) > bestLengths) {
+							best = body;
+							bestLengths = Integer.bitCount(lengths);
+						}
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Searches for a cap or start block that joins up with the lanes of a
+	 * body block. An end cap is a U-turn from lane A into lane B. A start cap
+	 * holds the start, and lane A leaves it to the right; the tour finishes
+	 * in it, after lane B comes back. A middle block holds the start, and has
+	 * body blocks on both sides: the tour leaves it to the left, comes back,
+	 * leaves it to the right, and comes back to finish in it. The body blocks
+	 * to the left are mirror images, so that their lane A runs to the left.
+	 */
+	private static int[][] find(int rows, int kind, int w, int s,
+	        int[][] body) {
+		if (body == null) {
+			return null;
+		}
+		int eA = body[0][0];
+		int xA = body[0][body[0].length - 1];
+		int eB = body[1][0];
+		int xB = body[1][body[1].length - 1];
+		if (kind == END_CAP) {
+			for (int a : moves(w, rows, xA % BODY - BODY, xA / BODY)) {
+				for (int b : moves(w, rows, eB % BODY - BODY, eB / BODY)) {
+					int[][] cap = cover(w, rows, new int[] { a },
+					        new int[] { b });
+					if (cap != null) {
+						return cap;
+					}
+				}
+			}
+			return null;
+		}
+
+		// lane A leaves to the right from square a, and lane B comes back
+		// to square b
+		for (int a : moves(w, rows, w + eA % BODY, eA / BODY)) {
+			for (int b : moves(w, rows, w + xB % BODY, xB / BODY)) {
+				if (kind == START_CAP) {
+					int[][] cap = cover(w, rows, new int[] { s, b },
+					        new int[] { a, -1 });
+					if (cap != null) {
+						return cap;
+					}
+					continue;
+				}
+
+				// mirrored lane A leaves to the left from square c, and
+				// mirrored lane B comes back to square d
+				for (int c : moves(w, rows, -1 - eA % BODY, eA / BODY)) {
+					for (int d : moves(w, rows, -1 - xB % BODY, xB / BODY)) {
+						int[][] middle = cover(w, rows,
+						        new int[] { s, d, b }, new int[] { c, a, -1 });
+						if (middle != null) {
+							return middle;
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the squares of a w x rows block that are a knight's move from
+	 * (x, y), which may lie outside the block.
+	 */
+	private static int[] moves(int w, int rows, int x, int y) {
+		int[] squares = new int[8];
+		int count = 0;
+		for (int s = 0; s < w * rows; s++) {
+			if (joins(s, w, x, y)) {
+				squares[count++] = s;
+			}
+		}
+		int[] moves = new int[count];
+		System.arraycopy(squares, 0, moves, 0, count);
+		return moves;
+	}
+
+	/**
+	 * Checks if square s of a block w squares long is a knight's move from
+	 * (x, y), which may lie outside the block.
+	 */
+	private static boolean joins(int s, int w, int x, int y) {
+		int dx = Math.abs(x - s % w);
+		int dy = Math.abs(y - s / w);
+		return dx * dy == 2;
+	}
+
+	/**
+	 * Searches for paths through a w x rows block that together visit every
+	 * square once: the i-th from square from[i] to square to[i], or to any
+	 * square if to[i] is -1, which is only allowed for the last.
+	 * @return the squares of each path, or null if there are none.
+	 */
+	private static int[][] cover(int w, int rows, int[] from, int[] to) {
+		// the ends must all differ, but a path may start where it ends
+		long ends = 0;
+		for (int i = 0; i < from.length; i++) {
+			long bits = 1L << from[i] | (to[i] < 0 ? 0 : 1L << to[i]);
+			if ((ends & bits) != 0) {
+				return null;
+			}
+			ends |= bits;
+		}
+		Cover cover = new Cover(KnightGraph.of(w, rows), from, to);
+		if (!cover.visit(0, from[0], 1L << from[0], 0)) {
+			return null;
+		}
+		int[][] paths = new int[from.length][];
+		int start = 0;
+		for (int i = 0; i < from.length; i++) {
+			paths[i] = new int[cover.ends[i] - start];
+			System.arraycopy(cover.order, start, paths[i], 0, paths[i].length);
+			start = cover.ends[i];
+		}
+		return paths;
+	}
+
+	/**
+	 * A Cover is the state of one search for the paths of a piece. Blocks
+	 * are small, so the squares visited are kept as a bit mask.
+	 */
+	private static class Cover {
+		private final long[] masks;
+		private final long full;
+		private final int[] from;
+		private final int[] to;
+		private final long[] reserved; // squares each path must not enter
+		private final int[] order;
+		private final int[] ends;
+		private long nodes;
+
+		Cover(KnightGraph graph, int[] from, int[] to) {
+			masks = graph.masks;
+			full = graph.squares == 64 ? -1L : (1L << graph.squares) - 1;
+			this.from = from;
+			this.to = to;
+			reserved = new long[from.length];
+			for (int i = 0; i < from.length; i++) {
+				for (int j = i; j < from.length; j++) {
+					if (j > i) {
+						reserved[i] |= 1L << from[j];
+					}
+					if (to[j] >= 0) {
+						reserved[i] |= 1L << to[j];
+					}
+				}
+			}
+			order = new int[graph.squares];
+			ends = new int[from.length];
+		}
+
+		/**
+		 * Moves to square s as move m of path i, and tries to finish from
+		 * there.
+		 */
+		boolean visit(int i, int s, long visited, int m) {
+			if (++nodes > NODE_LIMIT) {
+				return false;
+			}
+			order[m] = s;
+			if (s == to[i] || to[i] < 0 && visited == full) {
+				ends[i] = m + 1;
+				if (i + 1 == from.length) {
+					return visited == full;
+				}
+				int f = from[i + 1];
+				return visit(i + 1, f, visited | 1L << f, m + 1);
+			}
+			if (to[i] >= 0 && (masks[to[i]] & (~visited | 1L << s)) == 0) {
+				return false;
+			}
+			if (isStranded(i, s, visited)) {
+				return false;
+			}
+			long open = masks[s] & ~visited;
+			long moves = open & ~reserved[i];
+			if (to[i] >= 0) {
+				moves |= open & 1L << to[i];
+			}
+			while (moves != 0) {
+				int n = Long.numberOfTrailingZeros(moves);
+				moves &= moves - 1;
+				if (visit(i, n, visited | 1L << n, m + 1)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Checks if a square that the knight on s cannot reach next, and
+		 * that no later path starts on, has no unvisited squares left to come
+		 * in from. Such a square can never be visited.
+		 */
+		private boolean isStranded(int i, int s, long visited) {
+			long rest = full & ~visited & ~masks[s];
+			for (int j = i + 1; j < from.length; j++) {
+				rest &= ~(1L << from[j]);
+			}
+			while (rest != 0) {
+				int n = Long.numberOfTrailingZeros(rest);
+				rest &= rest - 1;
+				if ((masks[n] & ~visited) == 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,280 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code TourCache} remembers the tours already found, so that solving the
+ * same board from the same start again costs a lookup instead of a search.
+ * Each tour is keyed by the board size, the start square, the strategy, the
+ * tie-break and seed it was found with, and whether it is closed, and stored
+ * compactly as one byte per move (the index of the knight move into
+ * {@code KnightGraph.DX} and {@code DY}). Starts with no tour are remembered
+ * too.
+ * <p>
+ * Tours are stored under the canonical square of their start (see
+ * {@code BoardSymmetry}), so a start that is a turn or a flip of one
+ * already solved is served by turning or flipping the stored tour. When the
+ * cache grows past its size limit, the least recently used tours are
+ * dropped first.
+ * <p>
+ * A {@code TourCache} is thread safe, and can be shared by any number of
+ * boards (see KnightsTour.setCache()).
+ */
+public class TourCache {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	// the bytes counted for each entry, on top of its moves.
+	private static final int ENTRY_OVERHEAD = 64;
+
+	// stored for a start with no tour; a 1x1 tour has no moves either, but
+	// is a different array.
+	private static final byte[] NO_TOUR = new byte[0];
+
+	private final long maxBytes;
+	private final LinkedHashMap<Key, byte[]> entries =
+	        new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+	private long bytes;
+	private long hits;
+	private long symmetricHits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * A Key identifies a board, a canonical start square and a mode.
+	 */
+	private static final class Key {
+		private final int width;
+		private final int height;
+		private final int start;
+		private final KnightsTour.Strategy strategy;
+		private final boolean closed;
+		private final int tieBreak;
+		private final long seed;
+
+		Key(int width, int height, int start, KnightsTour.Strategy strategy,
+		        boolean closed, int tieBreak, long seed) {
+			this.width = width;
+			this.height = height;
+			this.start = start;
+			this.strategy = strategy;
+			this.closed = closed;
+			this.tieBreak = tieBreak;
+			this.seed = seed;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return width == k.width && height == k.height && start == k.start
+			        && strategy == k.strategy && closed == k.closed
+			        && tieBreak == k.tieBreak && seed == k.seed;
+		}
+
+		public int hashCode() {
+			int h = width;
+			h = 31 * h + height;
+			h = 31 * h + start;
+			h = 31 * h + strategy.hashCode();
+			h = 31 * h + tieBreak;
+			h = 31 * h + (int) (seed ^ (seed >>> 32));
+			return 2 * h + (closed ? 1 : 0);
+		}
+	}
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates an empty cache.
+	 * @param maxBytes the most memory the stored tours may take up, at about
+	 *            one byte per square (plus a little per tour).
+	 */
+	public TourCache(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException(
+			        "Size limit must not be negative.");
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Looks up the tour of a board from square start.
+	 *
+	 * @param width the number of columns of the board.
+	 * @param height the number of rows of the board.
+	 * @param strategy the strategy the tour is wanted from.
+	 * @param closed true for a closed tour.
+	 * @param tieBreak the Warnsdorff tie-break rotation it is wanted from.
+	 * @param seed the seed it is wanted from.
+	 * @param start the start square (x + y * width).
+	 * @param path where to store the square of each step, if found.
+	 * @return SOLVED if the tour was stored into path, NO_TOUR if the start
+	 *         is known to have no tour, or null if neither is known.
+	 */
+	public KnightsTour.Outcome get(int width, int height,
+	        KnightsTour.Strategy strategy, boolean closed, int tieBreak,
+	        long seed, int start, int[] path) {
+		BoardSymmetry symmetry = new BoardSymmetry(width, height);
+		int t = symmetry.toCanonical(start);
+		int canonical = symmetry.map(t, start);
+		byte[] moves;
+		synchronized (this) {
+			moves = entries.get(new Key(width, height, canonical, strategy,
+			        closed, tieBreak, seed));
+			if (moves == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+			if (canonical != start) {
+				symmetricHits++;
+			}
+		}
+		if (moves == NO_TOUR) {
+			return KnightsTour.Outcome.NO_TOUR;
+		}
+
+		// walk the stored moves from the canonical square, mapping each
+		// square back to the requested start's side of the board.
+		int inverse = symmetry.inverse(t);
+		int x = canonical % width;
+		int y = canonical / width;
+		path[0] = start;
+		for (int m = 0; m < moves.length; m++) {
+			x += KnightGraph.DX[moves[m]];
+			y += KnightGraph.DY[moves[m]];
+			path[m + 1] = symmetry.map(inverse, x + y * width);
+		}
+		return KnightsTour.Outcome.SOLVED;
+	}
+
+	/**
+	 * Stores the tour of a board from its first square, or that a start has
+	 * no tour. Tours bigger than the whole cache are not stored.
+	 *
+	 * @param width the number of columns of the board.
+	 * @param height the number of rows of the board.
+	 * @param strategy the strategy the tour was found with.
+	 * @param closed true for a closed tour.
+	 * @param tieBreak the Warnsdorff tie-break rotation it was found with.
+	 * @param seed the seed it was found with.
+	 * @param start the start square (x + y * width).
+	 * @param path the square of each step, or null if start has no tour.
+	 */
+	public void put(int width, int height, KnightsTour.Strategy strategy,
+	        boolean closed, int tieBreak, long seed, int start, int[] path) {
+		BoardSymmetry symmetry = new BoardSymmetry(width, height);
+		int t = symmetry.toCanonical(start);
+		int canonical = symmetry.map(t, start);
+		byte[] moves = NO_TOUR;
+		if (path != null) {
+			moves = new byte[path.length - 1];
+			int last = canonical;
+			for (int m = 1; m < path.length; m++) {
+				int s = symmetry.map(t, path[m]);
+				moves[m - 1] = (byte) KnightGraph.direction(
+				        s % width - last % width, s / width - last / width);
+				last = s;
+			}
+		}
+		long size = moves.length + ENTRY_OVERHEAD;
+		if (size > maxBytes) {
+			return;
+		}
+		synchronized (this) {
+			byte[] old = entries.put(new Key(width, height, canonical,
+			        strategy, closed, tieBreak, seed), moves);
+			if (old != null) {
+				bytes -= old.length + ENTRY_OVERHEAD;
+			}
+			bytes += size;
+
+			// drop the least recently used tours until the rest fit.
+			Iterator<byte[]> eldest = entries.values().iterator();
+			while (bytes > maxBytes) {
+				bytes -= eldest.next().length + ENTRY_OVERHEAD;
+				eldest.remove();
+				evictions++;
+			}
+		}
+	}
+
+	/**
+	 * Forgets every stored tour. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Returns the number of tours (and starts with no tour) stored.
+	 * @return the number of entries.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the memory the stored tours take up, as counted against the
+	 * size limit.
+	 * @return the number of bytes.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of lookups that found a stored answer, including
+	 * those served by a turn or flip of a stored tour.
+	 * @return the number of hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of hits served by a turn or flip of a tour stored
+	 * for another start.
+	 * @return the number of symmetric hits.
+	 */
+	public synchronized long getSymmetricHits() {
+		return symmetricHits;
+	}
+
+	/**
+	 * Returns the number of lookups that found nothing stored.
+	 * @return the number of misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of entries dropped to keep within the size limit.
+	 * @return the number of evictions.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Describes the statistics, for printing.
+	 * @return the hits, misses, entries and size.
+	 */
+	public synchronized String toString() {
+		return "hits: " + hits + " (" + symmetricHits + " by symmetry), misses: "
+		        + misses + ", entries: " + entries.size() + " (" + bytes
+		        + " bytes), evictions: " + evictions;
+	}
+}
@@ -0,0 +1,405 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * {@code TourCli} runs the solver from the command line, for scripts and
+ * pipelines. Unlike KnightsTour.main(), every setting is a named option,
+ * the results can be written as CSV, JSON lines or binary as well as text,
+ * and the exit code tells how the solves ended. It never touches AWT or
+ * Swing, so the JVM starts as quickly as it can.
+ * <p>
+ * Usage:
+ * <pre>
+ * java TourCli [options]
+ *   --size N | WxH        the board (default 8)
+ *   --start x,y | all     a start square; repeat for more (default 0,0)
+ *   --strategy NAME       BACKTRACKING, WARNSDORFF (default), RANDOMIZED
+ *                         or CONSTRUCTION
+ *   --closed              only accept closed tours
+ *   --time-limit MS       the most time per start (default none)
+ *   --threads N           the starts to solve at once (default one per core)
+ *   --format FORMAT       text (default), csv, jsonl or binary
+ *   --stats               add each solve's SearchStats to its result, and
+ *                         print the total to standard error
+ * </pre>
+ * The starts are solved on a {@code BatchSolver}, and each result is written
+ * as soon as it is found, so with more than one thread the results may come
+ * out of order. The binary format (see {@code TourWriter}) has no room for a
+ * start with no tour, so only the tours found are written.
+ * <p>
+ * The exit code is 0 if a tour was found from every start, 1 if some start
+ * has no tour, 2 if some solve ran out of time (which takes precedence), 3
+ * if the options are wrong, or 4 if the results can't be written.
+ */
+public class TourCli {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	/** The exit code when a tour was found from every start. */
+	public static final int SOLVED = 0;
+
+	/** The exit code when some start has no tour. */
+	public static final int NO_TOUR = 1;
+
+	/** The exit code when some solve ran out of time. */
+	public static final int TIMED_OUT = 2;
+
+	/** The exit code when the options are wrong. */
+	public static final int USAGE = 3;
+
+	/** The exit code when the results can't be written. */
+	public static final int FAILED = 4;
+
+	private static final String USAGE_TEXT = "Usage: java TourCli"
+	        + " [--size N|WxH] [--start x,y|all]... [--strategy NAME]"
+	        + " [--closed]\n"
+	        + "        [--time-limit MS] [--threads N]"
+	        + " [--format text|csv|jsonl|binary] [--stats]";
+
+	/**
+	 * The ways a result can be written.
+	 */
+	private enum Format {
+		TEXT, CSV, JSONL, BINARY
+	}
+
+	private int width = 8;
+	private int height = 8;
+	private final List<int[]> starts = new ArrayList<int[]>();
+	private boolean allStarts;
+	private KnightsTour.Strategy strategy = KnightsTour.Strategy.WARNSDORFF;
+	private boolean closed;
+	private long timeLimit;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private Format format = Format.TEXT;
+	private boolean showStats;
+	private final SearchStats total = new SearchStats();
+	private int exitCode = SOLVED;
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a runner from the command line options.
+	 * @param args the options (see above).
+	 * @throws IllegalArgumentException if an option is wrong.
+	 */
+	public TourCli(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (option.equals("--closed")) {
+				closed = true;
+				continue;
+			}
+			if (option.equals("--stats")) {
+				showStats = true;
+				continue;
+			}
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException(
+				        "Unknown option, or it has no value: " + option);
+			}
+			String value = args[++i];
+			if (option.equals("--size")) {
+				String[] sides = value.toLowerCase().split("x", -1);
+				if (sides.length > 2) {
+					throw new IllegalArgumentException(
+					        "--size must be N or WxH.");
+				}
+				width = parse(option, sides[0], 1);
+				height = sides.length > 1 ? parse(option, sides[1], 1)
+				        : width;
+			}
+			else if (option.equals("--start")) {
+				if (value.equalsIgnoreCase("all")) {
+					allStarts = true;
+				}
+				else {
+					String[] xy = value.split(",");
+					if (xy.length != 2) {
+						throw new IllegalArgumentException(
+						        "--start must be x,y or all.");
+					}
+					starts.add(new int[] { parse(option, xy[0].trim(), 0),
+					        parse(option, xy[1].trim(), 0) });
+				}
+			}
+			else if (option.equals("--strategy")) {
+				try {
+					strategy = KnightsTour.Strategy.valueOf(
+					        value.toUpperCase());
+				}
+				catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unknown strategy: "
+					        + value);
+				}
+			}
+			else if (option.equals("--time-limit")) {
+				timeLimit = parse(option, value, 0);
+			}
+			else if (option.equals("--threads")) {
+				threads = parse(option, value, 1);
+			}
+			else if (option.equals("--format")) {
+				try {
+					format = Format.valueOf(value.toUpperCase());
+				}
+				catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Unknown format: "
+					        + value);
+				}
+			}
+			else {
+				throw new IllegalArgumentException("Unknown option: "
+				        + option);
+			}
+		}
+		if (starts.isEmpty()) {
+			starts.add(new int[] { 0, 0 });
+		}
+		for (int[] start : starts) {
+			if (start[0] >= width || start[1] >= height) {
+				throw new IllegalArgumentException("Start (" + start[0] + ", "
+				        + start[1] + ") is off the " + width + "x" + height
+				        + " board.");
+			}
+		}
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Parses the int value of an option.
+	 * @param option the option, for the error message.
+	 * @param value the text to parse.
+	 * @param min the smallest value allowed.
+	 * @return the value.
+	 */
+	private static int parse(String option, String value, int min) {
+		try {
+			int n = Integer.parseInt(value);
+			if (n >= min) {
+				return n;
+			}
+		}
+		catch (NumberFormatException e) {
+			// fall through to the error below.
+		}
+		throw new IllegalArgumentException(option + " must be a whole number"
+		        + " of at least " + min + ": " + value);
+	}
+
+	/**
+	 * Solves every start, writing each result to out as it is found.
+	 * @param out the TourWriter to write the results to.
+	 * @return the exit code.
+	 * @throws IOException if the results can't be written.
+	 */
+	public int run(final TourWriter out) throws IOException {
+		if (format == Format.CSV) {
+			out.writeLine("width,height,x,y,outcome,millis,"
+			        + (showStats ? "nodes,backtracks,pruned,max_depth,"
+			                + "first_tour_millis,nodes_per_sec," : "")
+			        + "tour");
+		}
+		final BatchSolver solver = new BatchSolver(threads);
+		solver.setStrategy(strategy);
+		solver.setClosed(closed);
+		solver.setTimeLimit(timeLimit);
+		final IOException[] failure = new IOException[1];
+		solver.run(jobs(), new BatchSolver.ResultListener() {
+			public void finished(BatchSolver.Result result) {
+				if (failure[0] != null) {
+					return;
+				}
+				try {
+					write(out, result);
+					out.flush();
+				}
+				catch (IOException e) {
+					// the reader has gone (a closed pipe); stop solving.
+					failure[0] = e;
+					solver.cancel();
+				}
+			}
+		});
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+		if (showStats) {
+			System.err.println("total: " + total + " over "
+			        + total.getSearches() + " solves");
+		}
+		return exitCode;
+	}
+
+	/**
+	 * Returns the jobs, one per start, without building them all up front
+	 * (a large board has a great many starts).
+	 */
+	private Iterator<BatchSolver.Job> jobs() {
+		if (!allStarts) {
+			final Iterator<int[]> each = starts.iterator();
+			return new Iterator<BatchSolver.Job>() {
+				public boolean hasNext() {
+					return each.hasNext();
+				}
+
+				public BatchSolver.Job next() {
+					int[] start = each.next();
+					return new BatchSolver.Job(width, height, start[0],
+					        start[1]);
+				}
+			};
+		}
+		return new Iterator<BatchSolver.Job>() {
+			private int s;
+
+			public boolean hasNext() {
+				return s < width * height;
+			}
+
+			public BatchSolver.Job next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				BatchSolver.Job job = new BatchSolver.Job(width, height,
+				        s % width, s / width);
+				s++;
+				return job;
+			}
+		};
+	}
+
+	/**
+	 * Writes one result in the chosen format, and folds its outcome into
+	 * the exit code.
+	 */
+	private void write(TourWriter out, BatchSolver.Result result)
+	        throws IOException {
+		BatchSolver.Job job = result.getJob();
+		KnightsTour.Outcome outcome = result.getOutcome();
+		int[] path = result.getPath();
+		long millis = result.getNanos() / 1000000;
+		if (outcome == KnightsTour.Outcome.NO_TOUR) {
+			exitCode = Math.max(exitCode, NO_TOUR);
+		}
+		else if (outcome != KnightsTour.Outcome.SOLVED) {
+			exitCode = TIMED_OUT;
+		}
+		SearchStats stats = result.getStats();
+		if (stats != null) {
+			total.merge(stats);
+		}
+		else if (showStats) {
+			stats = new SearchStats(); // the job never started
+		}
+		switch (format) {
+		case TEXT:
+			out.writeLine(job + ": " + outcome + " in " + millis + " ms");
+			if (showStats) {
+				out.writeLine(stats.toString());
+			}
+			if (path != null) {
+				out.writeSteps(path, width);
+				out.writeGrid(path, width, height);
+			}
+			break;
+		case CSV:
+			out.write(width + "," + height + "," + job.getX() + ","
+			        + job.getY() + "," + outcome + "," + millis + ",");
+			if (showStats) {
+				out.write(stats.getNodes() + "," + stats.getBacktracks() + ","
+				        + stats.getPruned() + "," + stats.getMaxDepth() + ","
+				        + firstTourMillis(stats) + ","
+				        + stats.getNodesPerSecond() + ",");
+			}
+			if (path != null) {
+				out.writeSquares(path, ' ');
+			}
+			out.writeLine("");
+			break;
+		case JSONL:
+			out.write("{\"width\":" + width + ",\"height\":" + height
+			        + ",\"x\":" + job.getX() + ",\"y\":" + job.getY()
+			        + ",\"outcome\":\"" + outcome + "\",\"millis\":" + millis);
+			if (showStats) {
+				out.write(",\"stats\":{\"nodes\":" + stats.getNodes()
+				        + ",\"backtracks\":" + stats.getBacktracks()
+				        + ",\"pruned\":" + stats.getPruned()
+				        + ",\"maxDepth\":" + stats.getMaxDepth()
+				        + ",\"firstTourMillis\":" + firstTourMillis(stats)
+				        + ",\"nodesPerSec\":" + stats.getNodesPerSecond()
+				        + "}");
+			}
+			out.write(",\"tour\":");
+			if (path != null) {
+				out.write("[");
+				out.writeSquares(path, ',');
+				out.writeLine("]}");
+			}
+			else {
+				out.writeLine("null}");
+			}
+			break;
+		case BINARY:
+			if (path != null) {
+				out.writeBinary(path, width, height);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Returns the time to the first tour in whole milliseconds, or -1 if
+	 * there was none.
+	 */
+	private static long firstTourMillis(SearchStats stats) {
+		long nanos = stats.getFirstTourNanos();
+		return nanos < 0 ? -1 : nanos / 1000000;
+	}
+
+	// *********************************************************************
+	// MAIN
+	// *********************************************************************
+
+	/**
+	 * Runs the solver with the given options, and exits with a code that
+	 * tells how the solves ended.
+	 * @param args the options (see above).
+	 */
+	public static void main(String[] args) {
+		TourCli cli;
+		try {
+			cli = new TourCli(args);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE_TEXT);
+			System.exit(USAGE);
+			return;
+		}
+		TourWriter out = new TourWriter(new FileOutputStream(
+		        FileDescriptor.out));
+		int code;
+		try {
+			code = cli.run(out);
+			out.close();
+		}
+		catch (IOException e) {
+			System.err.println(e.getMessage());
+			code = FAILED;
+		}
+		System.exit(code);
+	}
+}
@@ -0,0 +1,265 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code TourConstruction} builds a closed tour of a large board without
+ * searching it, in time and memory linear in the number of squares. It
+ * follows Parberry's divide-and-conquer construction: the board is cut into
+ * blocks of 6, 8 or 10 squares a side, each block gets a closed tour of its
+ * own, and neighbouring tours are then joined into one.
+ * <p>
+ * Every block tour is "structured": it includes four fixed moves near the
+ * block's corners. Two blocks side by side are joined by dropping the
+ * right-hand move of the left block and the left-hand move of the right
+ * block, and adding the two knight's moves that cross between them, which
+ * turns the two cycles into one. Each row of blocks is joined this way, and
+ * then the rows are joined the same way through their first blocks. The nine
+ * block tours are found once, by a closed {@code TourSearch} that is required
+ * to include those moves, and are shared by every construction.
+ * <p>
+ * The tour is kept as the two squares next to each square on the cycle, and
+ * can be streamed out one step at a time from any start.
+ */
+public class TourConstruction {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private static final Map<Long, int[]> BLOCKS = new HashMap<Long, int[]>();
+
+	private final int width;
+	private final int height;
+	private final int[] a; // one square next to each square on the cycle
+	private final int[] b; // the other square next to each square
+
+	/**
+	 * A {@code StepSink} is given each step of a tour in order.
+	 */
+	public interface StepSink {
+		/**
+		 * Called with each step of the tour.
+		 * @param m the move number.
+		 * @param x the knight's x position.
+		 * @param y the knight's y position.
+		 */
+		void step(int m, int x, int y);
+	}
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Builds a closed tour of a width x height board.
+	 *
+	 * @param width the number of columns (even, and at least 6).
+	 * @param height the number of rows (even, and at least 6).
+	 */
+	public TourConstruction(int width, int height) {
+		if (!supports(width, height)) {
+			throw new IllegalArgumentException(
+			        "Width and height must be even and at least 6.");
+		}
+		this.width = width;
+		this.height = height;
+		a = new int[width * height];
+		b = new int[width * height];
+
+		int[] columns = split(width);
+		int[] rows = split(height);
+
+		// lay a block tour on each block
+		int top = 0;
+		for (int h : rows) {
+			int left = 0;
+			for (int w : columns) {
+				int[] cycle = block(w, h);
+				for (int m = 0; m < cycle.length; m++) {
+					int s = toBoard(cycle[m], w, left, top);
+					a[s] = toBoard(cycle[(m + cycle.length - 1) % cycle.length],
+					        w, left, top);
+					b[s] = toBoard(cycle[(m + 1) % cycle.length], w, left, top);
+				}
+				left += w;
+			}
+			top += h;
+		}
+
+		// join each row from left to right
+		top = 0;
+		for (int h : rows) {
+			int left = columns[0];
+			for (int i = 1; i < columns.length; i++) {
+				join(square(left - 2, top), square(left - 1, top + 2),
+				        square(left, top + 1), square(left + 1, top + 3));
+				left += columns[i];
+			}
+			top += h;
+		}
+
+		// join the rows from top to bottom
+		top = rows[0];
+		for (int i = 1; i < rows.length; i++) {
+			join(square(0, top - 2), square(2, top - 1), square(1, top),
+			        square(3, top + 1));
+			top += rows[i];
+		}
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Checks if a board can be built by a TourConstruction.
+	 * @param width the number of columns.
+	 * @param height the number of rows.
+	 * @return true if both are even and at least 6.
+	 */
+	public static boolean supports(int width, int height) {
+		return width >= 6 && height >= 6 && width % 2 == 0 && height % 2 == 0;
+	}
+
+	/**
+	 * Streams the tour starting at (x, y) to sink, one step at a time.
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @param sink the StepSink to give each step to.
+	 */
+	public void walk(int x, int y, StepSink sink) {
+		int previous = -1;
+		int s = square(x, y);
+		for (int m = 0; m < a.length; m++) {
+			sink.step(m, s % width, s / width);
+			int next = a[s] != previous ? a[s] : b[s];
+			previous = s;
+			s = next;
+		}
+	}
+
+	/**
+	 * Stores the tour starting at (x, y) into path.
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @param path the array to store the square (x + y * width) of each step
+	 *            into.
+	 */
+	public void walk(int x, int y, int[] path) {
+		int previous = -1;
+		int s = square(x, y);
+		for (int m = 0; m < a.length; m++) {
+			path[m] = s;
+			int next = a[s] != previous ? a[s] : b[s];
+			previous = s;
+			s = next;
+		}
+	}
+
+	/**
+	 * Joins two cycles into one, by replacing the move u1-u2 of one and the
+	 * move v1-v2 of the other with the moves u1-v1 and u2-v2.
+	 */
+	private void join(int u1, int u2, int v1, int v2) {
+		relink(u1, u2, v1);
+		relink(u2, u1, v2);
+		relink(v1, v2, u1);
+		relink(v2, v1, u2);
+	}
+
+	/**
+	 * Replaces the square next to s on the cycle that was from with to.
+	 */
+	private void relink(int s, int from, int to) {
+		if (a[s] == from) {
+			a[s] = to;
+		}
+		else {
+			b[s] = to;
+		}
+	}
+
+	/**
+	 * Returns the number of square (x, y) on the board.
+	 */
+	private int square(int x, int y) {
+		return x + y * width;
+	}
+
+	/**
+	 * Converts square s of a block w squares wide, whose top left corner is at
+	 * (left, top), to a square of the board.
+	 */
+	private int toBoard(int s, int w, int left, int top) {
+		return square(left + s % w, top + s / w);
+	}
+
+	/**
+	 * Splits an even length of at least 6 into blocks of 6, 8 and 10.
+	 * @param length the length to split.
+	 * @return the length of each block.
+	 */
+	private static int[] split(int length) {
+		int eights = length / 8;
+		int[] blocks;
+		switch (length % 8) {
+		case 0:
+			blocks = new int[eights];
+			break;
+		case 2:
+			blocks = new int[eights];
+			blocks[--eights] = 10;
+			break;
+		case 4:
+			blocks = new int[eights + 1];
+			blocks[eights--] = 6;
+			blocks[eights] = 6;
+			break;
+		default:
+			blocks = new int[eights + 1];
+			blocks[eights] = 6;
+			break;
+		}
+		for (int i = 0; i < eights; i++) {
+			blocks[i] = 8;
+		}
+		return blocks;
+	}
+
+	/**
+	 * Returns the structured closed tour of a w x h block, searching for it
+	 * only the first time. The tour includes the moves (0, 1)-(1, 3) and
+	 * (w - 1, 2)-(w - 2, 0) that join blocks side by side, and (1, 0)-(3, 1)
+	 * and (2, h - 1)-(0, h - 2) that join blocks one above the other.
+	 *
+	 * @param w the width of the block (6, 8 or 10).
+	 * @param h the height of the block (6, 8 or 10).
+	 * @return the square (x + y * w) of each step.
+	 */
+	private static int[] block(int w, int h) {
+		Long key = ((long) w << 32) | h;
+		synchronized (BLOCKS) {
+			int[] cycle = BLOCKS.get(key);
+			if (cycle == null) {
+				TourSearch search = new TourSearch(w, h,
+				        KnightsTour.Strategy.WARNSDORFF);
+				search.setClosed(true);
+				search.setRequiredMoves(new int[] {
+				        0 + 1 * w, 1 + 3 * w,
+				        (w - 1) + 2 * w, (w - 2) + 0 * w,
+				        1 + 0 * w, 3 + 1 * w,
+				        2 + (h - 1) * w, 0 + (h - 2) * w });
+				if (!search.search(0, 1)) {
+					throw new IllegalStateException("No structured tour of "
+					        + w + " x " + h + ".");
+				}
+				cycle = new int[w * h];
+				for (int m = 0; m < cycle.length; m++) {
+					cycle[m] = search.getSquare(m);
+				}
+				BLOCKS.put(key, cycle);
+			}
+			return cycle;
+		}
+	}
+}
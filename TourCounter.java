@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code TourCounter} counts every open tour from a starting square, rather
+ * than stopping at the first one. Like {@code ParallelTourSearch}, it splits
+ * the search tree into one subtask per way of making the first few moves,
+ * and runs the subtasks on a {@code ForkJoinPool}. Each subtask counts its
+ * subtree with {@code TourSearch.count()}, which does not allocate, and adds
+ * its count to a shared total as soon as it finishes, so the total so far
+ * can be reported while the rest of the count is still running.
+ * <p>
+ * A deeper split gives more, smaller subtasks, and so more frequent progress
+ * reports and better load balancing.
+ * <p>
+ * A count can be bounded by a time or node limit, or stopped by cancel() or
+ * a cancellation token, and then returns a partial total. getOutcome() tells
+ * a partial total from an exact one.
+ */
+public class TourCounter {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private final int W;
+	private final int H;
+	private final KnightGraph graph;
+	private final int splitDepth;
+	private final ForkJoinPool pool;
+	private final LongAdder tours = new LongAdder();
+	private final LongAdder subtrees = new LongAdder();
+	private final LongAdder nodes = new LongAdder();
+	private final AtomicBoolean stop = new AtomicBoolean();
+	private final Queue<SearchStats> stats =
+	        new ConcurrentLinkedQueue<SearchStats>();
+	private ProgressListener listener;
+	private CancellationToken token;
+	private long timeLimit; // milliseconds for the whole count, or 0
+	private long nodeLimit; // moves for the whole count, or 0
+	private long deadline; // the System.nanoTime() the count times out at
+	private volatile boolean stopped; // some subtree was not counted in full
+	private volatile boolean timedOut; // a limit ran out
+	private KnightsTour.Outcome outcome; // how the count ended
+
+	/**
+	 * A {@code ProgressListener} is told the running total each time a
+	 * subtree has been counted. It is called from the pool's threads, so it
+	 * must be thread safe.
+	 */
+	public interface ProgressListener {
+		/**
+		 * Called after each subtree has been counted.
+		 * @param tours the number of tours counted so far.
+		 * @param subtrees the number of subtrees counted so far.
+		 */
+		void progress(long tours, long subtrees);
+	}
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a counter over an N x N board, where N = size.
+	 *
+	 * @param size The height and width of the board to count over.
+	 * @param splitDepth The number of moves to make before handing the rest
+	 *            of the count to a subtask.
+	 * @param pool The pool to run the subtasks on.
+	 */
+	public TourCounter(int size, int splitDepth, ForkJoinPool pool) {
+		this(size, size, splitDepth, pool);
+	}
+
+	/**
+	 * Creates a counter over a width x height board.
+	 *
+	 * @param width The number of columns of the board.
+	 * @param height The number of rows of the board.
+	 * @param splitDepth The number of moves to make before handing the rest
+	 *            of the count to a subtask.
+	 * @param pool The pool to run the subtasks on.
+	 */
+	public TourCounter(int width, int height, int splitDepth,
+	        ForkJoinPool pool) {
+		if (splitDepth < 0) {
+			throw new IllegalArgumentException(
+			        "Split depth must not be negative.");
+		}
+		W = width;
+		H = height;
+		this.splitDepth = splitDepth;
+		this.pool = pool;
+		graph = KnightGraph.of(width, height);
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Assigns a listener to tell about the running total.
+	 * @param listener the ProgressListener, or null for none.
+	 */
+	public void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Stops a count in progress. count() then returns the partial total.
+	 */
+	public void cancel() {
+		stop.set(true);
+	}
+
+	/**
+	 * Assigns a token that stops the count when it is cancelled, as cancel()
+	 * does.
+	 * @param token the token to check, or null for none.
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		this.token = token;
+	}
+
+	/**
+	 * Limits how long the whole count may run. Each subtask is given the
+	 * time that is left when it starts.
+	 * @param millis the limit in milliseconds, or 0 for none.
+	 */
+	public void setTimeLimit(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException(
+			        "Time limit must not be negative.");
+		}
+		timeLimit = millis;
+	}
+
+	/**
+	 * Limits the number of moves the whole count may make or take back
+	 * (see TourSearch.setNodeLimit()). Each subtask is given the moves that
+	 * are left when it starts, so the subtasks running at once may each
+	 * spend all of them.
+	 * @param nodes the limit, or 0 for none.
+	 */
+	public void setNodeLimit(long nodes) {
+		if (nodes < 0) {
+			throw new IllegalArgumentException(
+			        "Node limit must not be negative.");
+		}
+		nodeLimit = nodes;
+	}
+
+	/**
+	 * Returns how the count ended: SOLVED or NO_TOUR if count() returned the
+	 * number of every tour (some or none), or TIMED_OUT or CANCELLED if it
+	 * was stopped first and returned a partial total.
+	 * @return the Outcome, or null before the count.
+	 */
+	public KnightsTour.Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Counts the open tours starting at (x, y), and waits for the result. A
+	 * TourCounter can only be used once.
+	 *
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @return the number of tours, or the partial total if stopped (see
+	 *         getOutcome()).
+	 */
+	public long count(int x, int y) {
+		if (x < 0 || x >= W || y < 0 || y >= H
+		        || !graph.allowsStart(x + y * W)) {
+			outcome = KnightsTour.Outcome.NO_TOUR;
+			return 0;
+		}
+		deadline = System.nanoTime() + timeLimit * 1000000L;
+		int[] prefix = new int[Math.min(splitDepth + 1, graph.squares)];
+		prefix[0] = x + y * W;
+		pool.invoke(new Subtree(prefix, 1));
+		long total = tours.sum();
+		if (timedOut) {
+			outcome = KnightsTour.Outcome.TIMED_OUT;
+		}
+		else if (stopped) {
+			outcome = KnightsTour.Outcome.CANCELLED;
+		}
+		else {
+			outcome = total > 0 ? KnightsTour.Outcome.SOLVED
+			        : KnightsTour.Outcome.NO_TOUR;
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of tours counted so far, by the subtrees that have
+	 * finished. This may be called from any thread while the count runs.
+	 * @return the partial total.
+	 */
+	public long getToursSoFar() {
+		return tours.sum();
+	}
+
+	/**
+	 * Returns the number of moves made or taken back so far, by the subtrees
+	 * that have finished (as TourSearch.getProgressNodes() counts them).
+	 * This may be called from any thread while the count runs.
+	 * @return the number of moves made or taken back so far.
+	 */
+	public long getNodesSoFar() {
+		return nodes.sum();
+	}
+
+	/**
+	 * Returns the statistics of every subtask's count, merged. Each
+	 * subtask counts on its own thread, and the counts are only added up
+	 * here, after the count.
+	 * @return a new SearchStats, empty if count() has not been called.
+	 */
+	public SearchStats getStats() {
+		SearchStats total = new SearchStats();
+		for (SearchStats s : stats) {
+			total.merge(s);
+		}
+		return total;
+	}
+
+	/**
+	 * A Subtree is the part of the count that begins with a given prefix of
+	 * moves. Short prefixes fork one Subtree per open move; full length ones
+	 * run TourSearch.count().
+	 */
+	private class Subtree extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] prefix;
+		private final int length;
+
+		Subtree(int[] prefix, int length) {
+			this.prefix = prefix;
+			this.length = length;
+		}
+
+		protected void compute() {
+			if (stop.get() || (token != null && token.isCancelled())) {
+				stopped = true;
+				return;
+			}
+
+			// deep enough: count the rest of this subtree on this thread.
+			if (length == prefix.length) {
+				TourSearch search = new TourSearch(W, H,
+				        KnightsTour.Strategy.BACKTRACKING);
+				search.setStopFlag(stop);
+				search.setCancellationToken(token);
+				search.setPruning(true);
+				if (!setLimits(search)) {
+					return;
+				}
+				tours.add(search.count(prefix, length));
+				if (search.getOutcome() == KnightsTour.Outcome.TIMED_OUT) {
+					timeOut();
+				}
+				else if (search.getOutcome()
+				        == KnightsTour.Outcome.CANCELLED) {
+					stopped = true;
+				}
+				SearchStats done = search.getStats();
+				stats.add(done);
+				nodes.add(done.getNodes() + done.getBacktracks());
+				subtrees.increment();
+				if (listener != null) {
+					listener.progress(tours.sum(), subtrees.sum());
+				}
+				return;
+			}
+
+			// otherwise fork one subtask per open move.
+			int s = prefix[length - 1];
+			List<Subtree> tasks = new ArrayList<Subtree>(8);
+			for (int k = graph.first[s]; k < graph.first[s + 1]; k++) {
+				int n = graph.neighbours[k];
+				if (!contains(n)) {
+					int[] child = prefix.clone();
+					child[length] = n;
+					tasks.add(new Subtree(child, length + 1));
+				}
+			}
+			invokeAll(tasks);
+		}
+
+		/**
+		 * Gives the count the time and moves that are left.
+		 * @return false if none are left, so the count should not start.
+		 */
+		private boolean setLimits(TourSearch search) {
+			if (timeLimit > 0) {
+				long left = deadline - System.nanoTime();
+				if (left <= 0) {
+					timeOut();
+					return false;
+				}
+				search.setTimeLimit(Math.max(1, left / 1000000));
+			}
+			if (nodeLimit > 0) {
+				long left = nodeLimit - nodes.sum();
+				if (left <= 0) {
+					timeOut();
+					return false;
+				}
+				search.setNodeLimit(left);
+			}
+			return true;
+		}
+
+		/**
+		 * Records that a limit ran out, and stops every subtask.
+		 */
+		private void timeOut() {
+			timedOut = true;
+			stop.set(true);
+		}
+
+		/**
+		 * Checks if square n is already part of the prefix.
+		 */
+		private boolean contains(int n) {
+			for (int i = 0; i < length; i++) {
+				if (prefix[i] == n) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * {@code TourEvents} holds the Java Flight Recorder events the solver emits
+ * (see {@code SolverMonitor}), so a running job can be recorded and profiled
+ * with the stock JDK tools, for example:
+ * <pre>
+ * java -XX:StartFlightRecording:filename=solve.jfr TourCli --size 8 ...
+ * jfr print --categories "Knight's Tour" solve.jfr
+ * </pre>
+ * Every event is in the "Knight's Tour" category, and names the board, the
+ * start square and the strategy of its solve.
+ */
+public class TourEvents {
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * TourEvents only holds the event classes.
+	 */
+	private TourEvents() {
+	}
+
+	// *********************************************************************
+	// events
+	// *********************************************************************
+
+	/**
+	 * Emitted when a solve starts, so a solve that never finishes still
+	 * shows up in the recording.
+	 */
+	@Name("knightstour.SolveStart")
+	@Label("Solve Start")
+	@Category("Knight's Tour")
+	@Description("A solve has started.")
+	@StackTrace(false)
+	static class SolveStart extends Event {
+		@Label("Width")
+		int width;
+
+		@Label("Height")
+		int height;
+
+		@Label("Start X")
+		int x;
+
+		@Label("Start Y")
+		int y;
+
+		@Label("Strategy")
+		String strategy;
+
+		@Label("Closed")
+		boolean closed;
+	}
+
+	/**
+	 * Emitted when a solve finishes, spanning the whole solve, with its
+	 * outcome and how much work it did.
+	 */
+	@Name("knightstour.Solve")
+	@Label("Solve")
+	@Category("Knight's Tour")
+	@Description("A solve, from start to finish.")
+	@StackTrace(false)
+	static class Solve extends Event {
+		@Label("Width")
+		int width;
+
+		@Label("Height")
+		int height;
+
+		@Label("Start X")
+		int x;
+
+		@Label("Start Y")
+		int y;
+
+		@Label("Strategy")
+		String strategy;
+
+		@Label("Closed")
+		boolean closed;
+
+		@Label("Outcome")
+		String outcome;
+
+		@Label("Nodes")
+		@Description("The moves made.")
+		long nodes;
+
+		@Label("Backtracks")
+		@Description("The moves taken back.")
+		long backtracks;
+
+		@Label("Pruned")
+		@Description("The positions given up on early.")
+		long pruned;
+
+		@Label("Max Depth")
+		@Description("The most squares on the path at once.")
+		int maxDepth;
+	}
+
+	/**
+	 * Emitted once a second (by default) for every solve in progress.
+	 */
+	@Name("knightstour.Progress")
+	@Label("Solve Progress")
+	@Category("Knight's Tour")
+	@Description("A sample of a solve in progress.")
+	@Period("1 s")
+	@StackTrace(false)
+	static class Progress extends Event {
+		@Label("Width")
+		int width;
+
+		@Label("Height")
+		int height;
+
+		@Label("Start X")
+		int x;
+
+		@Label("Start Y")
+		int y;
+
+		@Label("Strategy")
+		String strategy;
+
+		@Label("Depth")
+		@Description("The squares on the path, or 0 for a count.")
+		int depth;
+
+		@Label("Moves")
+		@Description("The moves made or taken back so far.")
+		long nodes;
+
+		@Label("Move Rate")
+		@Description("The moves made or taken back per second, since the "
+		        + "last sample.")
+		@Frequency
+		long nodesPerSecond;
+
+		@Label("Tours")
+		@Description("The tours counted so far, for a count.")
+		long tours;
+	}
+
+	/**
+	 * Emitted when a solve is cancelled before it finishes.
+	 */
+	@Name("knightstour.Cancelled")
+	@Label("Solve Cancelled")
+	@Category("Knight's Tour")
+	@Description("A solve was cancelled before it finished.")
+	@StackTrace(false)
+	static class Cancelled extends Event {
+		@Label("Width")
+		int width;
+
+		@Label("Height")
+		int height;
+
+		@Label("Start X")
+		int x;
+
+		@Label("Start Y")
+		int y;
+
+		@Label("Strategy")
+		String strategy;
+
+		@Label("Nodes")
+		@Description("The moves made before the solve stopped.")
+		long nodes;
+	}
+}
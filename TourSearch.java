@@ -0,0 +1,1162 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@code TourSearch} is an iterative version of the backtracking search in
+ * {@code KnightsTour.move()}. Instead of recursing once per square, it keeps
+ * its own stack: the knight's square at each step, the moves to try from
+ * there, and the index of the next move to try. So the depth of the search is
+ * limited by the size of the board rather than the size of the thread's
+ * stack, and boards of 500x500 and beyond can be searched on any thread.
+ * <p>
+ * Squares are numbered x + y * W, where W is the width of the board, and the
+ * moves from each square come from a shared {@code KnightGraph}, so the search
+ * only ever looks at moves that stay on the board. Visited squares are kept in
+ * a {@code VisitedSet}, one bit per square. With the BACKTRACKING strategy the
+ * moves are tried in the same order as {@code move()}, so both find the same
+ * tour.
+ * <p>
+ * The search also keeps the number of unvisited squares next to each square,
+ * updating the (at most eight) squares next to a square whenever it is
+ * visited or unvisited. So Warnsdorff's rule and the dead end checks look up
+ * the number of onward moves from a square, rather than counting them.
+ * <p>
+ * A {@code TourSearch} can be used for any number of searches, one after
+ * another, so a caller that solves many starts on one board needs only one.
+ * Each search counts its work (see getStats()) in plain fields, which cost
+ * next to nothing since only the searching thread touches them.
+ */
+public class TourSearch {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private final int W;
+	private final int H;
+	private final int M;
+	private final KnightsTour.Strategy strategy;
+	private final KnightGraph graph;
+	private final VisitedSet visited;
+	private final int[] path; // the knight's square at each step
+	private final int[] moves; // the squares to try at each step (8 each)
+	private final int[] count; // the number of moves stored for each step
+	private final int[] next; // the index of the next move to try
+	private final long[] keys = new long[8]; // sort keys for orderMoves()
+	private Listener listener;
+	private AtomicBoolean stop;
+	private CancellationToken token;
+	private long timeLimit; // milliseconds per search, or 0 for none
+	private long nodeLimit; // moves per search, or 0 for none
+	private long deadline; // the System.nanoTime() the search times out at
+	private long spent; // moves made and taken back by the finished runs
+	private KnightsTour.Outcome outcome; // how the last search ended
+	private boolean holdsTour; // the squares of a tour are still visited
+	private boolean closed; // only accept tours that end next to the start
+	private int[] partner; // the square each square must move to or from
+	private int tieBreak; // the first rotation of the tie-break order
+	private long seed = 1; // the seed of a RANDOMIZED search
+	private long random; // the xorshift state of a RANDOMIZED search
+	private long restarts; // the restarts of the last RANDOMIZED search
+	private final int[] degree; // unvisited squares next to each square
+	private boolean pruning; // backtrack early from dead ends
+	private int zeros; // unvisited squares with no unvisited neighbours
+	private int ones; // unvisited squares with one unvisited neighbour
+	                  // (zeros and ones are only kept up to date if pruning)
+	private int connectivityInterval; // plies between flood fills, or 0
+	private int[] mark; // the flood fill that last reached each square
+	private int[] stack; // the squares still to fill from
+	private int stamp; // the number of the current flood fill
+	private long nodes; // moves made by the last search
+	private long backtracks; // moves taken back by the last search
+	private long pruned; // positions given up on before trying a move
+	private int maxDepth; // the most squares on the path at once
+	private long startedAt; // the System.nanoTime() of the last start()
+	private long finishedAt; // the System.nanoTime() of the last finish()
+	private long firstTourAt; // the System.nanoTime() of the first tour
+	private boolean toured; // true once firstTourAt is set
+	private volatile long progressNodes; // moves, for other threads to read
+	private volatile int progressDepth; // the depth at the last checkStop()
+
+	// the stop flag, token and limits are checked once every
+	// STOP_CHECK_MASK + 1 moves.
+	private static final int STOP_CHECK_MASK = (1 << 12) - 1;
+
+	/**
+	 * A {@code Listener} is told about every step the search takes, for
+	 * example to animate the search in a GUI.
+	 */
+	public interface Listener {
+		/**
+		 * Called after the knight moves to (x, y) as move number m.
+		 */
+		void visited(int x, int y, int m);
+
+		/**
+		 * Called after the knight backtracks out of (x, y), move number m.
+		 */
+		void backtracked(int x, int y, int m);
+	}
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a search over an N x N board, where N = size.
+	 *
+	 * @param size The height and width of the board to search over.
+	 * @param strategy The order to try the moves in.
+	 */
+	public TourSearch(int size, KnightsTour.Strategy strategy) {
+		this(size, size, strategy);
+	}
+
+	/**
+	 * Creates a search over a width x height board.
+	 *
+	 * @param width The number of columns of the board.
+	 * @param height The number of rows of the board.
+	 * @param strategy The order to try the moves in.
+	 */
+	public TourSearch(int width, int height, KnightsTour.Strategy strategy) {
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("Size must be at least 1.");
+		}
+		W = width;
+		H = height;
+		M = W * H - 1;
+		this.strategy = strategy;
+		graph = KnightGraph.of(W, H);
+		visited = VisitedSet.create(graph);
+		path = new int[M + 1];
+		moves = new int[(M + 1) * 8];
+		count = new int[M + 1];
+		next = new int[M + 1];
+		degree = new int[M + 1];
+		for (int s = 0; s <= M; s++) {
+			degree[s] = graph.degree(s);
+		}
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Assigns a listener to tell about each step of the search.
+	 * @param listener the Listener, or null for none.
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns the strategy this search orders its moves by.
+	 * @return the Strategy.
+	 */
+	public KnightsTour.Strategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Assigns a flag that stops the search when it is set, for example when
+	 * another thread has already found a tour. The flag is checked every
+	 * few thousand moves.
+	 * @param stop the flag to check, or null for none.
+	 */
+	public void setStopFlag(AtomicBoolean stop) {
+		this.stop = stop;
+	}
+
+	/**
+	 * Assigns a token that stops the search when it is cancelled. Like the
+	 * stop flag, it is checked every few thousand moves, and a cancelled
+	 * search unmarks its squares before it returns.
+	 * @param token the token to check, or null for none.
+	 */
+	public void setCancellationToken(CancellationToken token) {
+		this.token = token;
+	}
+
+	/**
+	 * Limits how long each search (or count) may run. A search that runs out
+	 * of time stops as if cancelled, and getOutcome() returns TIMED_OUT.
+	 * @param millis the limit in milliseconds, or 0 for none.
+	 */
+	public void setTimeLimit(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException(
+			        "Time limit must not be negative.");
+		}
+		timeLimit = millis;
+	}
+
+	/**
+	 * Limits the number of moves each search (or count) may make or take
+	 * back. Backtracks count toward the limit, so it is compared with
+	 * getNodes() plus getBacktracks() of the SearchStats, not with
+	 * getNodes() alone. The limit is checked with the stop flag, so a search
+	 * may try up to a few thousand more moves before it stops, and
+	 * getOutcome() returns TIMED_OUT.
+	 * @param nodes the limit, or 0 for none.
+	 */
+	public void setNodeLimit(long nodes) {
+		if (nodes < 0) {
+			throw new IllegalArgumentException(
+			        "Node limit must not be negative.");
+		}
+		nodeLimit = nodes;
+	}
+
+	/**
+	 * Returns how the last search (or count) ended: SOLVED if it found a
+	 * tour, NO_TOUR if it searched everything without finding one, or
+	 * CANCELLED or TIMED_OUT if it was stopped first.
+	 * @return the Outcome, or null before the first search.
+	 */
+	public KnightsTour.Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Sets whether to only accept closed tours, whose last square is a
+	 * knight's move from the first, so the knight could return to its start.
+	 * A closed search backtracks as soon as every square next to the start
+	 * has been used up, rather than filtering open tours at the end.
+	 * @param closed true to search for (or count) closed tours only.
+	 */
+	public void setClosed(boolean closed) {
+		this.closed = closed;
+	}
+
+	/**
+	 * Sets whether to prune the search with the counts of unvisited squares
+	 * next to each square. Every unvisited square but the last must be
+	 * entered and left, so the search backtracks as soon as an unvisited
+	 * square has no unvisited neighbours, or more than one has exactly one
+	 * (other than a square the knight can move to next, which may be entered
+	 * from it). Pruning only cuts off parts of the search tree that hold no
+	 * tours, so the same tours are found, in the same order.
+	 * @param pruning true to prune dead ends.
+	 */
+	public void setPruning(boolean pruning) {
+		this.pruning = pruning;
+		zeros = 0;
+		ones = 0;
+		for (int s = 0; s <= M; s++) {
+			if (!visited.contains(s)) {
+				tally(degree[s], 1);
+			}
+		}
+	}
+
+	/**
+	 * Sets how often a pruned search also checks that the unvisited squares
+	 * can all still be reached from the knight, with a flood fill. A flood
+	 * fill looks at every unvisited square, so it is only run once every
+	 * given number of moves, which keeps its cost per move constant. Only
+	 * used with setPruning(true).
+	 * @param plies the number of moves between checks, or 0 for none.
+	 */
+	public void setConnectivityInterval(int plies) {
+		connectivityInterval = plies;
+		if (plies > 0 && mark == null) {
+			mark = new int[M + 1];
+			stack = new int[M + 1];
+		}
+	}
+
+	/**
+	 * Sets the rotation of the final Warnsdorff tie-break order to try first
+	 * (see search()). Searches with different rotations usually find
+	 * different tours, in very different times, so several can be raced
+	 * against each other (see PortfolioSolver). Not used by BACKTRACKING.
+	 * @param rotation the first rotation to try, from 0 to 7.
+	 */
+	public void setTieBreak(int rotation) {
+		if (rotation < 0 || rotation >= 8) {
+			throw new IllegalArgumentException(
+			        "Tie-break must be from 0 to 7.");
+		}
+		tieBreak = rotation;
+	}
+
+	/**
+	 * Sets the seed a RANDOMIZED search shuffles its moves with. A search
+	 * with the same seed, board and start always tries the same moves, so it
+	 * finds the same tour after the same number of restarts, which makes a
+	 * slow case easy to reproduce.
+	 * @param seed the seed.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the statistics of the last search (or count). A RANDOMIZED
+	 * search counts the work of every restart, and a closed WARNSDORFF
+	 * search that falls back to closing an open tour counts the open
+	 * search.
+	 * @return a new SearchStats.
+	 */
+	public SearchStats getStats() {
+		return new SearchStats(nodes, backtracks, pruned, maxDepth,
+		        startedAt, finishedAt, toured, firstTourAt);
+	}
+
+	/**
+	 * Returns the number of times the last RANDOMIZED search restarted.
+	 * @return the number of restarts.
+	 */
+	public long getRestarts() {
+		return restarts;
+	}
+
+	/**
+	 * Requires every tour found to include the given moves, in one direction
+	 * or the other. No square may be part of more than one required move.
+	 * @param required pairs of squares (x + y * W), each a knight's move
+	 *            apart: required[0] to required[1], required[2] to
+	 *            required[3], and so on. Null requires none.
+	 */
+	public void setRequiredMoves(int[] required) {
+		if (required == null) {
+			partner = null;
+			return;
+		}
+		partner = new int[M + 1];
+		Arrays.fill(partner, -1);
+		for (int i = 0; i + 1 < required.length; i += 2) {
+			int a = required[i];
+			int b = required[i + 1];
+			if (!isKnightMove(a, b) || partner[a] >= 0 || partner[b] >= 0) {
+				throw new IllegalArgumentException("Invalid required move.");
+			}
+			partner[a] = b;
+			partner[b] = a;
+		}
+	}
+
+	/**
+	 * Searches for a tour starting at (x, y).
+	 *
+	 * @param x the knight's starting x position.
+	 * @param y the knight's starting y position.
+	 * @return true if a tour was found.
+	 */
+	public boolean search(int x, int y) {
+		start();
+		// check if coordinate is off the board
+		if (x < 0 || x >= W || y < 0 || y >= H) {
+			return finish(false);
+		}
+		path[0] = x + y * W;
+		return finish(holdsTour = search(1));
+	}
+
+	/**
+	 * Searches for a tour that begins with the given moves. The search never
+	 * backtracks into the prefix, so searches of different prefixes cover
+	 * different parts of the search tree.
+	 *
+	 * @param prefix the squares of the first moves; each must be a knight's
+	 *            move from the one before, and none may repeat.
+	 * @param length the number of moves in the prefix (at least 1).
+	 * @return true if a tour was found.
+	 */
+	public boolean search(int[] prefix, int length) {
+		start();
+		System.arraycopy(prefix, 0, path, 0, length);
+		return finish(holdsTour = search(length));
+	}
+
+	/**
+	 * Gets ready for a new search (or count): unmarks the tour the last
+	 * search found (if any), clears the outcome, and starts the clock and the
+	 * move count for the limits.
+	 */
+	private void start() {
+		if (holdsTour) {
+			for (int m = 0; m <= M; m++) {
+				unvisit(path[m]);
+			}
+			holdsTour = false;
+		}
+		outcome = null;
+		spent = 0;
+		nodes = 0;
+		backtracks = 0;
+		pruned = 0;
+		maxDepth = 0;
+		toured = false;
+		progressNodes = 0;
+		progressDepth = 0;
+		startedAt = System.nanoTime();
+		deadline = startedAt + timeLimit * 1000000L;
+	}
+
+	/**
+	 * Records the outcome of a search that has finished, unless it was
+	 * stopped first, and the time it finished.
+	 * @param found true if a tour was found.
+	 * @return found.
+	 */
+	private boolean finish(boolean found) {
+		finishedAt = System.nanoTime();
+		if (outcome == null) {
+			outcome = found ? KnightsTour.Outcome.SOLVED
+			        : KnightsTour.Outcome.NO_TOUR;
+		}
+		if (found && !toured) {
+			firstTourAt = finishedAt;
+			toured = true;
+		}
+		return found;
+	}
+
+	/**
+	 * Searches for a tour beginning with path[0 ... length - 1].
+	 * <p>
+	 * Once in a while a Warnsdorff search makes an early choice bad enough
+	 * that backtracking out of it takes exponential time. So each of the
+	 * eight rotations of its final tie-break order (starting with the one
+	 * given to setTieBreak()) first gets a small budget of moves, and only if
+	 * none of them finds a tour does the search fall back to an unlimited
+	 * one. On larger boards a closed Warnsdorff search
+	 * rarely finishes within its budgets, so it falls back to closing an open
+	 * tour instead (see closeTour()).
+	 *
+	 * @param length the number of moves already in the path.
+	 * @return true if a tour was found.
+	 */
+	private boolean search(int length) {
+		if (closed && !graph.allowsClosedTour()) {
+			return false;
+		}
+		if (strategy == KnightsTour.Strategy.RANDOMIZED) {
+			return searchWithRestarts(length);
+		}
+		if (strategy != KnightsTour.Strategy.BACKTRACKING) {
+			long budget = Math.max(4L * (M + 1), 10000L);
+			for (int i = 0; i < 8; i++) {
+				Boolean result = search(length, (tieBreak + i) % 8, budget);
+				if (result != null) {
+					return result;
+				}
+				if (isStopped()) {
+					return false;
+				}
+			}
+			if (closed) {
+				closed = false;
+				boolean found = search(length);
+				closed = true;
+				return found && closeTour(length);
+			}
+		}
+		return search(length, tieBreak, Long.MAX_VALUE) == Boolean.TRUE;
+	}
+
+	/**
+	 * Runs a RANDOMIZED search as a series of restarts. A bad early choice
+	 * can cost a backtracking search exponential time, while a different
+	 * random order often finds a tour right away. So each restart shuffles
+	 * the moves afresh, and gives up after a cutoff of 4 * (M + 1) * luby(i)
+	 * moves. The Luby sequence (1, 1, 2, 1, 1, 2, 4, 1, ...) keeps trying
+	 * short searches, but also doubles the longest cutoff so far every so
+	 * often, so a board with no tour is still searched in full in the end.
+	 *
+	 * @param length the number of moves already in the path.
+	 * @return true if a tour was found.
+	 */
+	private boolean searchWithRestarts(int length) {
+		random = seed ^ 0x9E3779B97F4A7C15L;
+		if (random == 0) {
+			random = 1;
+		}
+		restarts = 0;
+		long unit = 4L * (M + 1);
+		for (long i = 1;; i++) {
+			Boolean result = search(length, 0, unit * luby(i));
+			if (result != null) {
+				return result;
+			}
+			if (isStopped()) {
+				return false;
+			}
+			restarts++;
+		}
+	}
+
+	/**
+	 * Returns the i-th term of the Luby sequence: 1, 1, 2, 1, 1, 2, 4, 1, 1,
+	 * 2, 1, 1, 2, 4, 8, ... Term 2^k - 1 is 2^(k - 1), and the terms between
+	 * repeat the sequence from the start.
+	 *
+	 * @param i the term, from 1.
+	 * @return the term's value.
+	 */
+	static long luby(long i) {
+		while (true) {
+			int k = 1;
+			while ((1L << k) - 1 < i) {
+				k++;
+			}
+			if ((1L << k) - 1 == i) {
+				return 1L << (k - 1);
+			}
+			i -= (1L << (k - 1)) - 1;
+		}
+	}
+
+	/**
+	 * Turns the open tour in path into a closed one, without changing its
+	 * first length moves. If the last square is a knight's move from some
+	 * earlier square path[i], then reversing path[i + 1 ... M] gives another
+	 * tour, which ends at the old path[i + 1] instead (a Posa rotation).
+	 * Rotations are made with a fixed pseudo-random choice of path[i] until
+	 * the tour ends next to its start, so the result is repeatable.
+	 *
+	 * @param length the number of moves that must not change.
+	 * @return true once the tour is closed, or false if the search was
+	 *         stopped first.
+	 */
+	private boolean closeTour(int length) {
+		int[] position = new int[M + 1];
+		for (int m = 0; m <= M; m++) {
+			position[path[m]] = m;
+		}
+		int seed = 1;
+		long rotations = 0;
+		while (!isKnightMove(path[0], path[M])) {
+			if ((++rotations & STOP_CHECK_MASK) == 0
+			        && checkStop(M, rotations)) {
+				for (int m = 0; m <= M; m++) {
+					unvisit(path[m]);
+				}
+				return false;
+			}
+
+			// pick a square next to the end (xorshift)
+			seed ^= seed << 13;
+			seed ^= seed >>> 17;
+			seed ^= seed << 5;
+			int end = path[M];
+			int i = position[graph.neighbour(end,
+			        (seed >>> 1) % graph.degree(end))];
+			if (i < length - 1 || i == M - 1
+			        || (partner != null && partner[path[i]] == path[i + 1])) {
+				continue;
+			}
+			for (int lo = i + 1, hi = M; lo < hi; lo++, hi--) {
+				int temp = path[lo];
+				path[lo] = path[hi];
+				path[hi] = temp;
+				position[path[lo]] = lo;
+				position[path[hi]] = hi;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Runs one search from the path[0 ... length - 1].
+	 *
+	 * @param length the number of moves already in the path.
+	 * @param rotation rotates the order of the eight knight moves that breaks
+	 *            any remaining Warnsdorff ties.
+	 * @param budget the number of moves to try before giving up.
+	 * @return true or false, or null if the budget ran out or the search was
+	 *         stopped first.
+	 */
+	private Boolean search(int length, int rotation, long budget) {
+		for (int i = 0; i < length; i++) {
+			visit(path[i]);
+			if (listener != null) {
+				listener.visited(path[i] % W, path[i] / W, i);
+			}
+		}
+		int base = length - 1;
+		int m = base;
+		next[m] = 0;
+		count[m] = orderMoves(path[m], m, rotation);
+		long sinceCheck = 0; // loop steps, for checking the stop flag
+		long forward = 0; // moves made and taken back, counted locally
+		long back = 0;
+		int deepest = m;
+		while (m >= base) {
+			// knight has now made M moves; finished!
+			if (m == M) {
+				record(forward, back, deepest);
+				return true;
+			}
+
+			// out of budget or stopped; clear the board for the next attempt.
+			if (budget-- == 0 || ((++sinceCheck & STOP_CHECK_MASK) == 0
+			        && checkStop(m, forward + back))) {
+				for (int i = 0; i <= m; i++) {
+					unvisit(path[i]);
+				}
+				record(forward, back, deepest);
+				return null;
+			}
+
+			// try the next move from this position
+			if (next[m] < count[m]) {
+				int s = moves[m * 8 + next[m]++];
+				m++;
+				path[m] = s;
+				next[m] = 0;
+				visit(s);
+				count[m] = orderMoves(s, m, rotation);
+				forward++;
+				if (m > deepest) {
+					deepest = m;
+				}
+				if (listener != null) {
+					listener.visited(s % W, s / W, m);
+				}
+			}
+
+			// none of the moves from this position led to a successful tour. We
+			// must backtrack and try a different path
+			else {
+				int s = path[m];
+				unvisit(s);
+				back++;
+				if (listener != null) {
+					listener.backtracked(s % W, s / W, m);
+				}
+				m--;
+			}
+		}
+
+		// the whole subtree was searched; unmark the rest of the prefix. The
+		// last backtrack left the prefix, so it took back no move.
+		for (int i = 0; i < base; i++) {
+			unvisit(path[i]);
+		}
+		record(forward, back - 1, deepest);
+		return false;
+	}
+
+	/**
+	 * Adds the work of one run of the search loop to the statistics, and to
+	 * the count for the node limit.
+	 * @param forward the number of moves made.
+	 * @param back the number of moves taken back.
+	 * @param deepest the deepest move number reached.
+	 */
+	private void record(long forward, long back, int deepest) {
+		spent += forward + back;
+		nodes += forward;
+		backtracks += back;
+		maxDepth = Math.max(maxDepth, deepest + 1);
+	}
+
+	/**
+	 * Counts every tour that begins with the given moves, without storing
+	 * any of them. Counting never allocates, so it can run for as long as the
+	 * board needs. The strategy does not matter here, since every move is
+	 * tried, and the listener is not told about the steps.
+	 *
+	 * @param prefix the squares of the first moves; each must be a knight's
+	 *            move from the one before, and none may repeat.
+	 * @param length the number of moves in the prefix (at least 1).
+	 * @return the number of tours found. getOutcome() is SOLVED or NO_TOUR
+	 *         if this is every tour, or CANCELLED or TIMED_OUT if the count
+	 *         was stopped and this is only a partial count.
+	 */
+	public long count(int[] prefix, int length) {
+		start();
+		if (closed && !graph.allowsClosedTour()) {
+			finish(false);
+			return 0;
+		}
+		System.arraycopy(prefix, 0, path, 0, length);
+		for (int i = 0; i < length; i++) {
+			visit(path[i]);
+		}
+		int base = length - 1;
+		int m = base;
+		next[m] = 0;
+		count[m] = openMoves(path[m], m);
+		long tours = 0;
+		long sinceCheck = 0; // loop steps, for checking the stop flag
+		long forward = 0; // moves made and taken back, counted locally
+		long back = 0;
+		int deepest = m;
+		while (m >= base) {
+			if ((++sinceCheck & STOP_CHECK_MASK) == 0
+			        && checkStop(m, forward + back)) {
+				for (int i = base; i <= m; i++) {
+					unvisit(path[i]);
+				}
+				break;
+			}
+
+			// knight has now made M moves; count it, and keep going.
+			if (m == M) {
+				if (tours++ == 0) {
+					firstTourAt = System.nanoTime();
+					toured = true;
+				}
+				unvisit(path[m]);
+				back++;
+				m--;
+			}
+
+			// try the next move from this position
+			else if (next[m] < count[m]) {
+				int s = moves[m * 8 + next[m]++];
+				m++;
+				path[m] = s;
+				next[m] = 0;
+				visit(s);
+				count[m] = openMoves(s, m);
+				forward++;
+				if (m > deepest) {
+					deepest = m;
+				}
+			}
+
+			// every move from this position has been tried; backtrack.
+			else {
+				unvisit(path[m]);
+				back++;
+				m--;
+			}
+		}
+
+		// unless stopped, the last backtrack left the prefix (not a move).
+		record(forward, m < base ? back - 1 : back, deepest);
+
+		// unmark the rest of the prefix.
+		for (int i = 0; i < base; i++) {
+			unvisit(path[i]);
+		}
+		finish(tours > 0);
+		return tours;
+	}
+
+	/**
+	 * Stores the open squares reachable from square s into moves[m * 8 ...],
+	 * in the order of the KnightGraph, for count(). As in orderMoves(), no
+	 * moves are stored if one of them would strand a square.
+	 *
+	 * @param s the knight's square.
+	 * @param m the move number of s.
+	 * @return the number of moves stored (from 0 to 8).
+	 */
+	private int openMoves(int s, int m) {
+		int offset = m * 8;
+		if (strandsStart(m) || (pruning && isDeadEnd(s, m))) {
+			pruned++;
+			return 0;
+		}
+		int count = visited.unvisitedNeighbours(s, moves, offset);
+		if (m + 1 < M) {
+			for (int i = 0; i < count; i++) {
+				if (degree[moves[offset + i]] == 0) {
+					pruned++;
+					return 0;
+				}
+			}
+		}
+		return partner == null ? count
+		        : keepRequiredMoves(s, m, offset, count);
+	}
+
+	/**
+	 * Removes the moves stored in moves[offset ...] that would leave out a
+	 * required move. If square s is required to move to a square that is
+	 * still unvisited, that is the only move kept. Otherwise a move to a
+	 * square n is only kept if n's required move (if any) can still be made:
+	 * its other square is s, is still unvisited, or is the start of a closed
+	 * tour that n finishes.
+	 *
+	 * @param s the knight's square.
+	 * @param m the move number of s.
+	 * @param offset the index of the first move in moves.
+	 * @param count the number of moves stored.
+	 * @return the number of moves kept, in the same order.
+	 */
+	private int keepRequiredMoves(int s, int m, int offset, int count) {
+		int p = partner[s];
+		if (p >= 0 && !visited.contains(p)) {
+			for (int i = 0; i < count; i++) {
+				if (moves[offset + i] == p) {
+					moves[offset] = p;
+					return 1;
+				}
+			}
+			return 0;
+		}
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			int n = moves[offset + i];
+			int q = partner[n];
+			if (q < 0 || q == s || !visited.contains(q)
+			        || (closed && q == path[0] && m + 1 == M)) {
+				moves[offset + kept++] = n;
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * Checks if the search should stop, and if so, records why in the
+	 * outcome. Once stopped, a search stays stopped until the next one
+	 * starts.
+	 * @return true if the search should stop.
+	 */
+	private boolean isStopped() {
+		return isStopped(spent);
+	}
+
+	/**
+	 * Checks if the search should stop, as isStopped() does, after the given
+	 * number of moves.
+	 * @param moves the moves made and taken back so far.
+	 * @return true if the search should stop.
+	 */
+	private boolean isStopped(long moves) {
+		if (outcome == null) {
+			if ((stop != null && stop.get())
+			        || (token != null && token.isCancelled())) {
+				outcome = KnightsTour.Outcome.CANCELLED;
+			}
+			else if ((nodeLimit > 0 && moves >= nodeLimit)
+			        || (timeLimit > 0 && System.nanoTime() - deadline >= 0)) {
+				outcome = KnightsTour.Outcome.TIMED_OUT;
+			}
+		}
+		return outcome != null;
+	}
+
+	/**
+	 * Publishes the progress for other threads to read, then checks if the
+	 * search should stop, counting the moves of the run in progress toward
+	 * the node limit as well as those of the runs already recorded. Called
+	 * once every STOP_CHECK_MASK + 1 moves.
+	 * @param m the move number the search has reached.
+	 * @param moves the moves made and taken back by the run in progress.
+	 * @return true if the search should stop.
+	 */
+	private boolean checkStop(int m, long moves) {
+		progressNodes = spent + moves;
+		progressDepth = m + 1;
+		return isStopped(spent + moves);
+	}
+
+	/**
+	 * Returns the number of moves the search in progress has made or taken
+	 * back, as of its last check of the limits (which it makes every few
+	 * thousand moves). Unlike getStats(), this may be called from any thread
+	 * while the search runs.
+	 * @return the number of moves made or taken back so far.
+	 */
+	public long getProgressNodes() {
+		return progressNodes;
+	}
+
+	/**
+	 * Returns the number of squares on the path of the search in progress,
+	 * as of its last check of the limits. This may be called from any thread
+	 * while the search runs.
+	 * @return the current depth, or 0 if the search has not checked yet.
+	 */
+	public int getProgressDepth() {
+		return progressDepth;
+	}
+
+	/**
+	 * Stores the open squares reachable from square s into moves[m * 8 ...],
+	 * in the order they should be tried.
+	 * <p>
+	 * For BACKTRACKING, this is the order of the KnightGraph, and for
+	 * RANDOMIZED, the same moves shuffled (see shuffle()). For WARNSDORFF,
+	 * it is best first by Warnsdorff's rule (see moveKey()), and if one of the
+	 * open squares has no onward moves and is not the last square of the tour,
+	 * no move from s can work: going there is a dead end, and going anywhere
+	 * else strands it. In that case no moves are stored, so the search
+	 * backtracks right away. The same goes for a closed search that has
+	 * stranded the start (see strandsStart()).
+	 *
+	 * @param s the knight's square.
+	 * @param m the move number of s.
+	 * @param rotation rotates the final Warnsdorff tie-break order.
+	 * @return the number of moves stored (from 0 to 8).
+	 */
+	private int orderMoves(int s, int m, int rotation) {
+		int offset = m * 8;
+		if (strandsStart(m) || (pruning && isDeadEnd(s, m))) {
+			pruned++;
+			return 0;
+		}
+		if (strategy == KnightsTour.Strategy.BACKTRACKING
+		        || strategy == KnightsTour.Strategy.RANDOMIZED) {
+			int count = visited.unvisitedNeighbours(s, moves, offset);
+			if (strategy == KnightsTour.Strategy.RANDOMIZED) {
+				shuffle(offset, count);
+			}
+			return partner == null ? count
+			        : keepRequiredMoves(s, m, offset, count);
+		}
+
+		int[] neighbours = graph.neighbours;
+		int count = 0;
+		int end = graph.first[s + 1];
+		for (int k = graph.first[s]; k < end; k++) {
+			int n = neighbours[k];
+			if (!visited.contains(n)) {
+				int onward = degree[n];
+				if (onward == 0 && m + 1 < M) {
+					pruned++;
+					return 0;
+				}
+				onward = onwardMoves(n, onward);
+
+				// insertion sort by key
+				int rank = (graph.directions[k] + rotation) % 8;
+				long key = moveKey(onward, n, rank);
+				int j = count++;
+				while (j > 0 && keys[j - 1] > key) {
+					keys[j] = keys[j - 1];
+					moves[offset + j] = moves[offset + j - 1];
+					j--;
+				}
+				keys[j] = key;
+				moves[offset + j] = n;
+			}
+		}
+		return partner == null ? count
+		        : keepRequiredMoves(s, m, offset, count);
+	}
+
+	/**
+	 * Shuffles moves[offset ... offset + count - 1] with the xorshift
+	 * generator of a RANDOMIZED search (a Fisher-Yates shuffle).
+	 *
+	 * @param offset the index of the first move in moves.
+	 * @param count the number of moves stored.
+	 */
+	private void shuffle(int offset, int count) {
+		for (int i = count - 1; i > 0; i--) {
+			random ^= random << 13;
+			random ^= random >>> 7;
+			random ^= random << 17;
+			int j = offset + (int) ((random >>> 1) % (i + 1));
+			int temp = moves[offset + i];
+			moves[offset + i] = moves[j];
+			moves[j] = temp;
+		}
+	}
+
+	/**
+	 * Marks square s visited, and takes it off the count of unvisited
+	 * neighbours of each square next to it.
+	 * @param s the square.
+	 */
+	private void visit(int s) {
+		visited.add(s);
+		if (pruning) {
+			tally(degree[s], -1);
+		}
+		updateNeighbours(s, -1);
+	}
+
+	/**
+	 * Marks square s not visited, and puts it back on the count of unvisited
+	 * neighbours of each square next to it.
+	 * @param s the square.
+	 */
+	private void unvisit(int s) {
+		visited.remove(s);
+		if (pruning) {
+			tally(degree[s], 1);
+		}
+		updateNeighbours(s, 1);
+	}
+
+	/**
+	 * Adds change to the count of unvisited neighbours of each square next
+	 * to s, keeping zeros and ones up to date for the unvisited ones if
+	 * pruning.
+	 */
+	private void updateNeighbours(int s, int change) {
+		int[] neighbours = graph.neighbours;
+		int end = graph.first[s + 1];
+		for (int k = graph.first[s]; k < end; k++) {
+			int n = neighbours[k];
+			if (pruning && !visited.contains(n)) {
+				tally(degree[n], -1);
+				degree[n] += change;
+				tally(degree[n], 1);
+			}
+			else {
+				degree[n] += change;
+			}
+		}
+	}
+
+	/**
+	 * Adds change to zeros or ones, if the given number of unvisited
+	 * neighbours is 0 or 1.
+	 */
+	private void tally(int neighbours, int change) {
+		if (neighbours == 0) {
+			zeros += change;
+		}
+		else if (neighbours == 1) {
+			ones += change;
+		}
+	}
+
+	/**
+	 * Checks if the unvisited squares can no longer all be visited, with the
+	 * knight on square s at move m (see setPruning()). An unvisited square
+	 * with no unvisited neighbours can only be the last square, moved to
+	 * next. One with a single unvisited neighbour has to be the last square,
+	 * unless it is moved to next, and only one square can be last.
+	 * @param s the knight's square.
+	 * @param m the move number of s.
+	 * @return true if the search should backtrack.
+	 */
+	private boolean isDeadEnd(int s, int m) {
+		int left = M - m;
+		if (zeros > 0 && left > 1) {
+			return true;
+		}
+		if (ones > 1) {
+			int near = 0;
+			int[] neighbours = graph.neighbours;
+			int end = graph.first[s + 1];
+			for (int k = graph.first[s]; k < end; k++) {
+				int n = neighbours[k];
+				if (degree[n] == 1 && !visited.contains(n)) {
+					near++;
+				}
+			}
+			if (ones - near + Math.max(near - 1, 0) > 1) {
+				return true;
+			}
+		}
+		return connectivityInterval > 0 && left > 1
+		        && m % connectivityInterval == 0 && !isConnected(s, left);
+	}
+
+	/**
+	 * Flood fills the unvisited squares from square s, to check that the
+	 * knight can still reach all of them.
+	 * @param s the knight's square.
+	 * @param left the number of unvisited squares.
+	 * @return true if every unvisited square was reached.
+	 */
+	private boolean isConnected(int s, int left) {
+		if (++stamp == Integer.MAX_VALUE) {
+			Arrays.fill(mark, 0);
+			stamp = 1;
+		}
+		int[] neighbours = graph.neighbours;
+		int top = 0;
+		int reached = 0;
+		mark[s] = stamp;
+		stack[top++] = s;
+		while (top > 0) {
+			int q = stack[--top];
+			int end = graph.first[q + 1];
+			for (int k = graph.first[q]; k < end; k++) {
+				int n = neighbours[k];
+				if (mark[n] != stamp && !visited.contains(n)) {
+					mark[n] = stamp;
+					stack[top++] = n;
+					reached++;
+				}
+			}
+		}
+		return reached == left;
+	}
+
+	/**
+	 * Checks if a closed search can no longer finish next to the start: the
+	 * last square has to be one of the start's neighbours, so at least one of
+	 * them must stay unvisited until the final move.
+	 * @param m the move number of the knight's square.
+	 * @return true if the search should backtrack.
+	 */
+	private boolean strandsStart(int m) {
+		return closed && m < M && degree[path[0]] == 0;
+	}
+
+	/**
+	 * Counts the onward moves from square n. In a closed search, the move
+	 * back to the start counts too, so that the start's neighbours are not
+	 * mistaken for dead ends (and used up early) by Warnsdorff's rule.
+	 * @param n the square.
+	 * @param degree the number of unvisited squares next to n.
+	 * @return the number of onward moves.
+	 */
+	private int onwardMoves(int n, int degree) {
+		if (closed && isKnightMove(n, path[0])) {
+			degree++;
+		}
+		return degree;
+	}
+
+	/**
+	 * Checks if squares a and b are a knight's move apart.
+	 * @param a the first square.
+	 * @param b the second square.
+	 * @return true if a knight can move from a to b.
+	 */
+	private boolean isKnightMove(int a, int b) {
+		int dx = a % W - b % W;
+		int dy = a / W - b / W;
+		return dx * dx + dy * dy == 5;
+	}
+
+	/**
+	 * Builds the sort key of a candidate square for Warnsdorff's rule: fewer
+	 * onward moves first, then the square farther from the center of the
+	 * board, then the given tie-break rank.
+	 *
+	 * @param degree the number of onward moves from the square.
+	 * @param s the square.
+	 * @param rank the final tie-break, from 0 to 7.
+	 * @return a key; smaller keys are tried first.
+	 */
+	private long moveKey(int degree, int s, int rank) {
+		long closeness = Integer.MAX_VALUE - graph.distance[s];
+		return ((long) degree << 59) | (closeness << 3) | rank;
+	}
+
+	/**
+	 * Returns the square (x + y * W) of the knight at move m of the last tour
+	 * found.
+	 * @param m the move number.
+	 * @return the square.
+	 */
+	public int getSquare(int m) {
+		return path[m];
+	}
+
+	/**
+	 * Returns the x position of the knight at move m of the last tour found.
+	 * @param m the move number.
+	 * @return the x position.
+	 */
+	public int getX(int m) {
+		return path[m] % W;
+	}
+
+	/**
+	 * Returns the y position of the knight at move m of the last tour found.
+	 * @param m the move number.
+	 * @return the y position.
+	 */
+	public int getY(int m) {
+		return path[m] / W;
+	}
+}
@@ -0,0 +1,340 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * {@code TourStore} reads tours from a file written by
+ * {@code TourStore.Writer}, so that tours precomputed once (for example from
+ * every start of every board up to 100x100) can be loaded without solving
+ * them again.
+ * <p>
+ * The file is memory mapped, and nothing is read when it is opened but the
+ * header, so opening costs the same however many tours it holds. A lookup
+ * is a binary search of the index, and returns a read only view of the tour
+ * inside the mapped file, without copying it.
+ * <p>
+ * The file is laid out as follows (all numbers big endian):
+ * <pre>
+ * header (32 bytes):  magic "KTS1", version, entry count, index offset (long)
+ * tours:              the square (x + y * width) of each step, one int each
+ * index (32 bytes each, sorted by width, height and start):
+ *                     width, height, start, squares, offset (long), CRC32
+ * </pre>
+ * The index comes last so that the writer can stream the tours out without
+ * knowing how many there will be. Each entry's CRC32 covers the bytes of its
+ * tour, and is checked by verify() rather than by every lookup.
+ * <p>
+ * A single mapping can't exceed 2 GB, and every start of every board up to
+ * 100x100 takes about 8 GB, so the tours are mapped in segments of 1 GB. The
+ * writer skips to the next segment rather than let a tour cross into it, so
+ * every tour is a slice of a single mapping.
+ */
+public class TourStore implements Closeable {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	static final int MAGIC = 0x4B545331; // "KTS1"
+	static final int VERSION = 1;
+	static final int HEADER = 32; // bytes
+	static final int ENTRY = 32; // bytes per index entry
+	static final int SEGMENT_BITS = 30; // 1 GB per mapped segment
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer[] segments; // the tours, 1 GB at a time
+	private final MappedByteBuffer index; // the index entries
+	private final int count;
+	private final long end; // the offset of the index, just past the tours
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Opens a tour file for reading, by mapping it into memory.
+	 *
+	 * @param file the file written by a TourStore.Writer.
+	 * @throws IOException if the file can't be read, or is not a tour file.
+	 */
+	public TourStore(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = this.file.getChannel();
+			long size = channel.size();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+			        Math.min(size, HEADER));
+			if (size < HEADER || header.getInt(0) != MAGIC) {
+				throw new IOException("Not a tour file: " + file);
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException("Unknown tour file version: "
+				        + header.getInt(4));
+			}
+			count = header.getInt(8);
+			end = header.getLong(12);
+			if (count < 0 || end < HEADER
+			        || end + (long) count * ENTRY != size) {
+				throw new IOException("Tour file is truncated: " + file);
+			}
+			index = channel.map(FileChannel.MapMode.READ_ONLY, end,
+			        (long) count * ENTRY);
+			int last = (int) ((end - 1) >>> SEGMENT_BITS);
+			segments = new MappedByteBuffer[last + 1];
+			for (int i = 0; i < segments.length; i++) {
+				long start = (long) i << SEGMENT_BITS;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+				        Math.min(end - start, 1L << SEGMENT_BITS));
+			}
+		}
+		catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Returns the number of tours in the file.
+	 * @return the number of tours.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Looks up the tour of a width x height board from square start.
+	 *
+	 * @param width the number of columns of the board.
+	 * @param height the number of rows of the board.
+	 * @param start the start square (x + y * width).
+	 * @return a read only view of the square of each step, in the mapped
+	 *         file, or null if the file has no such tour.
+	 */
+	public IntBuffer get(int width, int height, int start) {
+		int entry = find(width, height, start);
+		if (entry < 0) {
+			return null;
+		}
+		return slice(entry).asIntBuffer();
+	}
+
+	/**
+	 * Checks the tour of a width x height board from square start against
+	 * its CRC32.
+	 *
+	 * @param width the number of columns of the board.
+	 * @param height the number of rows of the board.
+	 * @param start the start square (x + y * width).
+	 * @return true if the tour is there and intact.
+	 */
+	public boolean verify(int width, int height, int start) {
+		int entry = find(width, height, start);
+		return entry >= 0 && isIntact(entry);
+	}
+
+	/**
+	 * Checks every tour in the file against its CRC32.
+	 * @return the number of tours that are damaged.
+	 */
+	public int verify() {
+		int damaged = 0;
+		for (int entry = 0; entry < count; entry++) {
+			if (!isIntact(entry)) {
+				damaged++;
+			}
+		}
+		return damaged;
+	}
+
+	/**
+	 * Closes the file. The views returned by get() must not be used after.
+	 */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Finds an index entry by binary search.
+	 * @return the entry's number, or -1 if there is none.
+	 */
+	private int find(int width, int height, int start) {
+		int lo = 0;
+		int hi = count - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int at = mid * ENTRY;
+			int c = compare(index.getInt(at), index.getInt(at + 4),
+			        index.getInt(at + 8), width, height, start);
+			if (c < 0) {
+				lo = mid + 1;
+			}
+			else if (c > 0) {
+				hi = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the bytes of an entry's tour, as a view of the mapped file.
+	 */
+	private ByteBuffer slice(int entry) {
+		int at = entry * ENTRY;
+		int squares = index.getInt(at + 12);
+		long offset = index.getLong(at + 16);
+		long last = offset + 4L * squares - 1;
+		if (squares <= 0 || offset < HEADER || last >= end
+		        || offset >>> SEGMENT_BITS != last >>> SEGMENT_BITS) {
+			throw new IllegalStateException("Damaged tour file index.");
+		}
+		ByteBuffer segment = segments[(int) (offset >>> SEGMENT_BITS)];
+		int position = (int) (offset & ((1L << SEGMENT_BITS) - 1));
+		return segment.slice(position, 4 * squares).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Checks if an entry's tour matches its CRC32.
+	 */
+	private boolean isIntact(int entry) {
+		CRC32 crc = new CRC32();
+		crc.update(slice(entry));
+		return (int) crc.getValue() == index.getInt(entry * ENTRY + 24);
+	}
+
+	/**
+	 * Compares two keys, by width, then height, then start.
+	 */
+	static int compare(int w1, int h1, int s1, int w2, int h2, int s2) {
+		if (w1 != w2) {
+			return Integer.compare(w1, w2);
+		}
+		if (h1 != h2) {
+			return Integer.compare(h1, h2);
+		}
+		return Integer.compare(s1, s2);
+	}
+
+	/**
+	 * A {@code Writer} streams tours into a new tour file, in any order,
+	 * keeping only their index entries in memory. The index is sorted and
+	 * written when the Writer is closed.
+	 */
+	public static class Writer implements Closeable {
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+		private final List<long[]> entries = new ArrayList<long[]>();
+		private long offset = HEADER;
+
+		/**
+		 * Creates (or replaces) a tour file.
+		 * @param file the file to write.
+		 * @throws IOException if the file can't be written.
+		 */
+		public Writer(File file) throws IOException {
+			this.file = new RandomAccessFile(file, "rw");
+			this.file.setLength(0);
+			channel = this.file.getChannel();
+			channel.position(HEADER);
+		}
+
+		/**
+		 * Adds the tour of a width x height board. The tour starts at its
+		 * first square, and no two tours may share a board and start.
+		 *
+		 * @param width the number of columns of the board.
+		 * @param height the number of rows of the board.
+		 * @param tour the square (x + y * width) of each step, as returned
+		 *            by KnightsTour.getPath().
+		 * @throws IOException if the tour can't be written.
+		 */
+		public void add(int width, int height, int[] tour)
+		        throws IOException {
+			if (tour.length != width * height) {
+				throw new IllegalArgumentException(
+				        "The tour must visit every square once.");
+			}
+			if (4L * tour.length > 1L << SEGMENT_BITS) {
+				throw new IllegalArgumentException("The tour is too large.");
+			}
+
+			// start a new segment rather than cross into it.
+			long last = offset + 4L * tour.length - 1;
+			if (offset >>> SEGMENT_BITS != last >>> SEGMENT_BITS) {
+				offset = (last >>> SEGMENT_BITS) << SEGMENT_BITS;
+				channel.position(offset);
+			}
+			ByteBuffer bytes = ByteBuffer.allocate(4 * tour.length);
+			bytes.asIntBuffer().put(tour);
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			bytes.rewind();
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			entries.add(new long[] { width, height, tour[0], tour.length,
+			        offset, (int) crc.getValue() });
+			offset += 4L * tour.length;
+		}
+
+		/**
+		 * Writes the index and the header, and closes the file.
+		 * @throws IOException if the file can't be written.
+		 */
+		public void close() throws IOException {
+			try {
+				Collections.sort(entries, new Comparator<long[]>() {
+					public int compare(long[] a, long[] b) {
+						return TourStore.compare((int) a[0], (int) a[1],
+						        (int) a[2], (int) b[0], (int) b[1], (int) b[2]);
+					}
+				});
+				ByteBuffer index = ByteBuffer.allocate(ENTRY * entries.size());
+				long[] last = null;
+				for (long[] e : entries) {
+					if (last != null && last[0] == e[0] && last[1] == e[1]
+					        && last[2] == e[2]) {
+						throw new IllegalStateException("Two tours of "
+						        + e[0] + "x" + e[1] + " start at " + e[2]
+						        + ".");
+					}
+					index.putInt((int) e[0]).putInt((int) e[1])
+					        .putInt((int) e[2]).putInt((int) e[3])
+					        .putLong(e[4]).putInt((int) e[5]).putInt(0);
+					last = e;
+				}
+				index.flip();
+				while (index.hasRemaining()) {
+					channel.write(index);
+				}
+				ByteBuffer header = ByteBuffer.allocate(HEADER);
+				header.putInt(MAGIC).putInt(VERSION).putInt(entries.size())
+				        .putLong(offset);
+				header.rewind();
+				channel.position(0);
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+			}
+			finally {
+				file.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,215 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * {@code TourWriter} writes a tour to an output stream, in the same text
+ * formats as {@code KnightsTour.printSteps()} and {@code printGrid()}, or in
+ * a compact binary format. Numbers are encoded straight into a large byte
+ * buffer, digit by digit, so no Strings are built, and the stream is only
+ * written to once the buffer fills. So even a 1000x1000 tour (a million
+ * steps) is written in a fraction of a second.
+ * <p>
+ * The binary format is the board's width, height and start square (as big
+ * endian ints), then one byte per move, holding the index of the knight move
+ * into {@code KnightGraph.DX} and {@code DY}.
+ */
+public class TourWriter implements Closeable {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final OutputStream out;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int length; // the number of bytes in the buffer
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a writer to the given stream. The stream needs no buffering
+	 * of its own.
+	 * @param out the stream to write to.
+	 */
+	public TourWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Writes one line per step, "m:\tx, y", numbering the steps from 1 (as
+	 * KnightsTour.printSteps() does).
+	 * @param path the square (x + y * width) of each step.
+	 * @param width the number of columns of the board.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void writeSteps(int[] path, int width) throws IOException {
+		for (int m = 0; m < path.length; m++) {
+			writeNumber(m + 1);
+			writeByte(':');
+			writeByte('\t');
+			writeNumber(path[m] % width);
+			writeByte(',');
+			writeByte(' ');
+			writeNumber(path[m] / width);
+			writeByte('\n');
+		}
+	}
+
+	/**
+	 * Writes the step number of each square, one row of the board per line,
+	 * with a blank line after each (as KnightsTour.printGrid() does).
+	 * @param path the square (x + y * width) of each step.
+	 * @param width the number of columns of the board.
+	 * @param height the number of rows of the board.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void writeGrid(int[] path, int width, int height)
+	        throws IOException {
+		int[] step = new int[width * height];
+		for (int m = 0; m < path.length; m++) {
+			step[path[m]] = m;
+		}
+		for (int s = 0; s < step.length; s++) {
+			if (step[s] < 10) {
+				writeByte(' ');
+			}
+			writeNumber(step[s]);
+			writeByte(' ');
+			writeByte(' ');
+			writeByte(' ');
+			if ((s + 1) % width == 0) {
+				writeByte('\n');
+				writeByte('\n');
+			}
+		}
+	}
+
+	/**
+	 * Writes the tour in the compact binary format.
+	 * @param path the square (x + y * width) of each step.
+	 * @param width the number of columns of the board.
+	 * @param height the number of rows of the board.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void writeBinary(int[] path, int width, int height)
+	        throws IOException {
+		writeInt(width);
+		writeInt(height);
+		writeInt(path[0]);
+		for (int m = 1; m < path.length; m++) {
+			writeByte(KnightGraph.direction(
+			        path[m] % width - path[m - 1] % width,
+			        path[m] / width - path[m - 1] / width));
+		}
+	}
+
+	/**
+	 * Writes the square of each step on one line, with a separator between
+	 * them and no line break after (for a field of a CSV or JSON record).
+	 * @param path the square (x + y * width) of each step.
+	 * @param separator the character to write between two squares.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void writeSquares(int[] path, char separator) throws IOException {
+		for (int m = 0; m < path.length; m++) {
+			if (m > 0) {
+				writeByte(separator);
+			}
+			writeNumber(path[m]);
+		}
+	}
+
+	/**
+	 * Writes some text, with no line break after. The text should be ASCII.
+	 * @param text the text.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void write(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			writeByte(text.charAt(i));
+		}
+	}
+
+	/**
+	 * Writes a line of text, for example a heading. The text should be
+	 * ASCII.
+	 * @param line the text, without its line break.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void writeLine(String line) throws IOException {
+		write(line);
+		writeByte('\n');
+	}
+
+	/**
+	 * Writes out everything buffered so far, and flushes the stream.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	/**
+	 * Writes out everything buffered so far, and closes the stream.
+	 * @throws IOException if the stream can't be written.
+	 */
+	public void close() throws IOException {
+		drain();
+		out.close();
+	}
+
+	/**
+	 * Appends the decimal digits of a number that is not negative.
+	 */
+	private void writeNumber(int n) throws IOException {
+		if (length + 10 > BUFFER_SIZE) {
+			drain();
+		}
+		int digits = 1;
+		for (int rest = n / 10; rest > 0; rest /= 10) {
+			digits++;
+		}
+		for (int i = length + digits - 1; i >= length; i--) {
+			buffer[i] = (byte) ('0' + n % 10);
+			n /= 10;
+		}
+		length += digits;
+	}
+
+	/**
+	 * Appends an int, big endian.
+	 */
+	private void writeInt(int n) throws IOException {
+		writeByte(n >>> 24);
+		writeByte(n >>> 16);
+		writeByte(n >>> 8);
+		writeByte(n);
+	}
+
+	/**
+	 * Appends one byte.
+	 */
+	private void writeByte(int b) throws IOException {
+		if (length == BUFFER_SIZE) {
+			drain();
+		}
+		buffer[length++] = (byte) b;
+	}
+
+	/**
+	 * Writes the buffer to the stream, and empties it.
+	 */
+	private void drain() throws IOException {
+		out.write(buffer, 0, length);
+		length = 0;
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ * {@code VisitedSet} records which squares of a board the knight has already
+ * visited, one bit per square. Boards of up to 64 squares (8x8) fit in a
+ * single {@code long}, and larger boards use a {@code long[]}.
+ * <p>
+ * Searches also need the unvisited squares that a square can reach. On small
+ * boards a single AND against the knight-attack mask of the square, taken
+ * from the board's {@code KnightGraph}, shows if there are any.
+ */
+public abstract class VisitedSet {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	final KnightGraph graph;
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates an empty set over the squares of the given board.
+	 * @param graph the board's KnightGraph.
+	 */
+	VisitedSet(KnightGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Creates an empty VisitedSet of the best kind for the given board.
+	 * @param graph the board's KnightGraph.
+	 * @return a new VisitedSet.
+	 */
+	public static VisitedSet create(KnightGraph graph) {
+		if (graph.squares <= 64) {
+			return new Bitboard(graph);
+		}
+		return new Bitset(graph);
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Checks if square s has been visited.
+	 * @param s the square (x + y * width).
+	 * @return true if s is in the set.
+	 */
+	public abstract boolean contains(int s);
+
+	/**
+	 * Marks square s as visited.
+	 * @param s the square (x + y * width).
+	 */
+	public abstract void add(int s);
+
+	/**
+	 * Marks square s as not visited.
+	 * @param s the square (x + y * width).
+	 */
+	public abstract void remove(int s);
+
+	/**
+	 * Marks every square as not visited.
+	 */
+	public abstract void clear();
+
+	/**
+	 * Stores the unvisited squares that a knight on square s could move to
+	 * into moves[offset ...], in the order of the KnightGraph.
+	 * @param s the square (x + y * width).
+	 * @param moves the array to store the squares into.
+	 * @param offset the first index of moves to use.
+	 * @return the number of squares stored, from 0 to 8.
+	 */
+	public abstract int unvisitedNeighbours(int s, int[] moves, int offset);
+
+	// *********************************************************************
+	// implementations
+	// *********************************************************************
+
+	/**
+	 * A VisitedSet for boards of up to 64 squares, held in a single long.
+	 */
+	static final class Bitboard extends VisitedSet {
+		private final long[] masks;
+		private long bits;
+
+		Bitboard(KnightGraph graph) {
+			super(graph);
+			masks = graph.masks;
+		}
+
+		public boolean contains(int s) {
+			return (bits & (1L << s)) != 0;
+		}
+
+		public void add(int s) {
+			bits |= 1L << s;
+		}
+
+		public void remove(int s) {
+			bits &= ~(1L << s);
+		}
+
+		public void clear() {
+			bits = 0;
+		}
+
+		public int unvisitedNeighbours(int s, int[] moves, int offset) {
+			long open = masks[s] & ~bits;
+			if (open == 0) {
+				return 0;
+			}
+			int[] neighbours = graph.neighbours;
+			int count = 0;
+			int end = graph.first[s + 1];
+			for (int k = graph.first[s]; k < end; k++) {
+				int n = neighbours[k];
+				if ((open & (1L << n)) != 0) {
+					moves[offset + count++] = n;
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * A VisitedSet for boards of any size, held in a long[] with one bit per
+	 * square.
+	 */
+	static final class Bitset extends VisitedSet {
+		private final long[] words;
+
+		Bitset(KnightGraph graph) {
+			super(graph);
+			words = new long[(graph.squares + 63) >>> 6];
+		}
+
+		public boolean contains(int s) {
+			return (words[s >>> 6] & (1L << s)) != 0;
+		}
+
+		public void add(int s) {
+			words[s >>> 6] |= 1L << s;
+		}
+
+		public void remove(int s) {
+			words[s >>> 6] &= ~(1L << s);
+		}
+
+		public void clear() {
+			for (int i = 0; i < words.length; i++) {
+				words[i] = 0;
+			}
+		}
+
+		public int unvisitedNeighbours(int s, int[] moves, int offset) {
+			int[] neighbours = graph.neighbours;
+			int count = 0;
+			int end = graph.first[s + 1];
+			for (int k = graph.first[s]; k < end; k++) {
+				int n = neighbours[k];
+				if ((words[n >>> 6] & (1L << n)) == 0) {
+					moves[offset + count++] = n;
+				}
+			}
+			return count;
+		}
+	}
+}
@@ -0,0 +1,905 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.swing.JTextArea;
+
+/**
+ * {@code TourBenchmark} measures the solver, so a change to move() or to a
+ * strategy can be shown to help or hurt. It covers the recursive move(),
+ * solve() with each Strategy, the two VisitedSet backends, getTour(), and
+ * writing a tour with a TourWriter or into a JTextArea, each over a few
+ * board sizes and start squares.
+ * <p>
+ * It works like a small JMH: each benchmark and parameter runs in a fresh
+ * JVM (a fork), with warmup iterations to let the JIT compile the code and
+ * then measured iterations of a fixed time. For each it reports the mean
+ * time per operation and its standard deviation, and, like JMH's
+ * {@code -prof gc}, the bytes allocated per operation and the garbage
+ * collections that ran. The results can be saved as CSV and compared with
+ * those of another commit:
+ * <pre>
+ * java TourBenchmark --out before.csv
+ * (change the solver and rebuild)
+ * java TourBenchmark --out after.csv --baseline before.csv
+ * </pre>
+ * Usage:
+ * <pre>
+ * java TourBenchmark [options]
+ *   --only REGEX          the benchmarks to run, by name (default all)
+ *   --size N | WxH        the boards to run on; repeat for more (default
+ *                         each benchmark's own)
+ *   --start x,y           the start squares; repeat for more (default 0,0
+ *                         when --size is given)
+ *   --warmup N            the warmup iterations (default 3)
+ *   --iterations N        the measured iterations (default 5)
+ *   --time MS             the length of each iteration (default 500)
+ *   --forks N             the JVMs to run each benchmark in, or 0 to run
+ *                         them all in this one (default 1)
+ *   --out FILE            save the results as CSV
+ *   --baseline FILE       compare the results with a saved CSV
+ *   --list                list the benchmarks and their boards
+ * </pre>
+ * The JVM options of this JVM (for example -Xmx or
+ * -Dknightstour.telemetry=true) are passed on to the forks. Only the
+ * benchmark's own thread is counted, so the allocation of a parallel solve
+ * would be missed; the benchmarks here all run on one thread.
+ */
+public class TourBenchmark {
+
+	// *********************************************************************
+	// fields
+	// *********************************************************************
+
+	/** The exit code when the options are wrong. */
+	public static final int USAGE = 3;
+
+	private static final String USAGE_TEXT = "Usage: java TourBenchmark"
+	        + " [--only REGEX] [--size N|WxH]... [--start x,y]...\n"
+	        + "        [--warmup N] [--iterations N] [--time MS] [--forks N]"
+	        + " [--out FILE]\n"
+	        + "        [--baseline FILE] [--list]";
+
+	private static final String HEADER = "benchmark,board,samples,"
+	        + "ns_per_op,stdev_ns,bytes_per_op,gc_count,gc_millis";
+
+	/** A fork writes each of its samples on a line starting with this. */
+	private static final String SAMPLE = "sample,";
+
+	/** Where the benchmarks' results go, so the JIT can't drop the work. */
+	private static volatile long sink;
+
+	private Pattern only = Pattern.compile(".*");
+	private final List<String> sizes = new ArrayList<String>();
+	private final List<String> starts = new ArrayList<String>();
+	private int warmup = 3;
+	private int iterations = 5;
+	private long time = 500;
+	private int forks = 1;
+	private String out;
+	private String baseline;
+	private boolean list;
+	private String runName; // set in a fork: the benchmark to run
+	private String runBoard; // set in a fork: the board to run it on
+
+	// *********************************************************************
+	// constructors
+	// *********************************************************************
+
+	/**
+	 * Creates a runner from the command line options.
+	 * @param args the options (see above).
+	 * @throws IllegalArgumentException if an option is wrong.
+	 */
+	public TourBenchmark(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String option = args[i];
+			if (option.equals("--list")) {
+				list = true;
+				continue;
+			}
+			if (option.equals("--run") && i + 2 < args.length) {
+				runName = args[++i];
+				runBoard = args[++i];
+				continue;
+			}
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException(
+				        "Unknown option, or it has no value: " + option);
+			}
+			String value = args[++i];
+			if (option.equals("--only")) {
+				only = Pattern.compile(value);
+			}
+			else if (option.equals("--size")) {
+				new Board(value + "@0,0"); // check it
+				sizes.add(value);
+			}
+			else if (option.equals("--start")) {
+				new Board("1@" + value); // check it
+				starts.add(value);
+			}
+			else if (option.equals("--warmup")) {
+				warmup = parse(option, value, 0);
+			}
+			else if (option.equals("--iterations")) {
+				iterations = parse(option, value, 1);
+			}
+			else if (option.equals("--time")) {
+				time = parse(option, value, 1);
+			}
+			else if (option.equals("--forks")) {
+				forks = parse(option, value, 0);
+			}
+			else if (option.equals("--out")) {
+				out = value;
+			}
+			else if (option.equals("--baseline")) {
+				baseline = value;
+			}
+			else {
+				throw new IllegalArgumentException("Unknown option: "
+				        + option);
+			}
+		}
+		if (!starts.isEmpty() && sizes.isEmpty()) {
+			throw new IllegalArgumentException(
+			        "--start needs --size as well.");
+		}
+	}
+
+	// *********************************************************************
+	// benchmarks
+	// *********************************************************************
+
+	/**
+	 * Returns every benchmark, in the order they are run.
+	 * @return the benchmarks.
+	 */
+	private static List<Benchmark> benchmarks() {
+		List<Benchmark> all = new ArrayList<Benchmark>();
+
+		all.add(new Benchmark("move", "5@0,0", "5@1,0", "6@0,0") {
+			Operation setUp(Board board) {
+				final KnightsTour tour = new KnightsTour(board.width,
+				        board.height);
+				final int x = board.x;
+				final int y = board.y;
+				return new Operation() {
+					public long run() {
+						tour.reset();
+						return tour.move(x, y, 0) ? 1 : 0;
+					}
+				};
+			}
+		});
+
+		for (final KnightsTour.Strategy strategy : KnightsTour.Strategy
+		        .values()) {
+			all.add(new Benchmark("solve." + strategy, boards(strategy)) {
+				Operation setUp(Board board) {
+					final KnightsTour tour = new KnightsTour(board.width,
+					        board.height);
+					tour.setStrategy(strategy);
+					final int x = board.x;
+					final int y = board.y;
+					return new Operation() {
+						public long run() {
+							tour.reset();
+							return tour.solve(x, y).ordinal();
+						}
+					};
+				}
+			});
+		}
+
+		all.add(new VisitedBenchmark("visited.Bitboard", "8@0,0") {
+			boolean accepts(Board board) {
+				return board.width * board.height <= 64;
+			}
+
+			VisitedSet create(KnightGraph graph) {
+				return new VisitedSet.Bitboard(graph);
+			}
+		});
+		all.add(new VisitedBenchmark("visited.Bitset", "8@0,0", "100@0,0") {
+			VisitedSet create(KnightGraph graph) {
+				return new VisitedSet.Bitset(graph);
+			}
+		});
+
+		all.add(new Benchmark("getTour", "8@0,0", "200@0,0", "1000@0,0") {
+			Operation setUp(Board board) {
+				final KnightsTour tour = solved(board);
+				return new Operation() {
+					public long run() {
+						return tour.getTour().length;
+					}
+				};
+			}
+		});
+
+		all.add(new FormatBenchmark("format.steps") {
+			void write(TourWriter writer, int[] path, Board board)
+			        throws IOException {
+				writer.writeSteps(path, board.width);
+			}
+		});
+		all.add(new FormatBenchmark("format.grid") {
+			void write(TourWriter writer, int[] path, Board board)
+			        throws IOException {
+				writer.writeGrid(path, board.width, board.height);
+			}
+		});
+		all.add(new FormatBenchmark("format.binary") {
+			void write(TourWriter writer, int[] path, Board board)
+			        throws IOException {
+				writer.writeBinary(path, board.width, board.height);
+			}
+		});
+		all.add(new Benchmark("format.textArea", "8@0,0", "50@0,0") {
+			Operation setUp(Board board) {
+				final KnightsTour tour = solved(board);
+				final JTextArea textArea = new JTextArea();
+				return new Operation() {
+					public long run() {
+						textArea.setText("");
+						tour.printSteps(textArea);
+						tour.printGrid(textArea);
+						return textArea.getDocument().getLength();
+					}
+				};
+			}
+		});
+		return all;
+	}
+
+	/**
+	 * Returns the default boards for solve() with the given strategy: small
+	 * ones for the searches that can take exponential time, and large ones
+	 * for those that can't. Only CONSTRUCTION is given a narrow strip, as
+	 * Warnsdorff's rule can search one for ever.
+	 */
+	private static String[] boards(KnightsTour.Strategy strategy) {
+		switch (strategy) {
+		case BACKTRACKING:
+			return new String[] { "5@0,0", "6@0,0", "8@1,2" };
+		case RANDOMIZED:
+			return new String[] { "8@0,0", "8@1,2", "10@0,0" };
+		case CONSTRUCTION:
+			return new String[] { "8@0,0", "8@1,2", "50@0,0", "200@0,0",
+			        "3x100@0,0" };
+		default:
+			return new String[] { "8@0,0", "8@1,2", "50@0,0", "200@0,0" };
+		}
+	}
+
+	/**
+	 * Returns a board solved from its start square, built where it can be.
+	 * @param board the board and start square.
+	 * @return the solved KnightsTour.
+	 */
+	private static KnightsTour solved(Board board) {
+		KnightsTour tour = new KnightsTour(board.width, board.height);
+		tour.setStrategy(KnightsTour.Strategy.CONSTRUCTION);
+		if (tour.solve(board.x, board.y) != KnightsTour.Outcome.SOLVED) {
+			throw new IllegalArgumentException("There is no tour of "
+			        + board);
+		}
+		return tour;
+	}
+
+	// *********************************************************************
+	// methods
+	// *********************************************************************
+
+	/**
+	 * Parses the int value of an option.
+	 * @param option the option, for the error message.
+	 * @param value the text to parse.
+	 * @param min the smallest value allowed.
+	 * @return the value.
+	 */
+	private static int parse(String option, String value, int min) {
+		try {
+			int n = Integer.parseInt(value);
+			if (n >= min) {
+				return n;
+			}
+		}
+		catch (NumberFormatException e) {
+			// fall through to the error below.
+		}
+		throw new IllegalArgumentException(option + " must be a whole number"
+		        + " of at least " + min + ": " + value);
+	}
+
+	/**
+	 * Returns the boards to run a benchmark on: those given by --size and
+	 * --start, or else the benchmark's own.
+	 */
+	private List<String> boardsOf(Benchmark benchmark) {
+		List<String> boards = new ArrayList<String>();
+		if (sizes.isEmpty()) {
+			for (String board : benchmark.boards) {
+				boards.add(board);
+			}
+			return boards;
+		}
+		for (String size : sizes) {
+			if (starts.isEmpty()) {
+				boards.add(size + "@0,0");
+			}
+			for (String start : starts) {
+				boards.add(size + "@" + start);
+			}
+		}
+		return boards;
+	}
+
+	/**
+	 * Runs every benchmark chosen, printing a table of the results, then
+	 * saves and compares them as asked.
+	 * @throws IOException if a fork fails, or a report can't be read or
+	 *             written.
+	 */
+	public void run() throws IOException {
+		if (runName != null) {
+			// this is a fork: measure one benchmark and write the samples.
+			for (Sample sample : measure(find(runName), new Board(runBoard))) {
+				System.out.println(SAMPLE + sample);
+			}
+			return;
+		}
+		List<Result> results = new ArrayList<Result>();
+		if (!list) {
+			System.out.println(String.format("%-24s %-14s %4s %14s %12s %14s"
+			        + " %5s %8s", "Benchmark", "Board", "Cnt", "ns/op",
+			        "stdev", "B/op", "GCs", "GC ms"));
+		}
+		for (Benchmark benchmark : benchmarks()) {
+			if (!only.matcher(benchmark.name).matches()) {
+				continue;
+			}
+			for (String text : boardsOf(benchmark)) {
+				Board board = new Board(text);
+				if (!benchmark.accepts(board)) {
+					continue;
+				}
+				if (list) {
+					System.out.println(benchmark.name + " " + board);
+					continue;
+				}
+				List<Sample> samples = new ArrayList<Sample>();
+				if (forks == 0) {
+					samples.addAll(measure(benchmark, board));
+				}
+				for (int f = 0; f < forks; f++) {
+					samples.addAll(fork(benchmark, board));
+				}
+				Result result = new Result(benchmark.name, board.toString(),
+				        samples);
+				System.out.println(result.format());
+				results.add(result);
+			}
+		}
+		if (out != null) {
+			PrintWriter writer = new PrintWriter(new FileWriter(out));
+			try {
+				writer.println(HEADER);
+				for (Result result : results) {
+					writer.println(result);
+				}
+			}
+			finally {
+				writer.close();
+			}
+		}
+		if (baseline != null) {
+			compare(results, read(baseline));
+		}
+	}
+
+	/**
+	 * Returns the benchmark with the given name.
+	 */
+	private static Benchmark find(String name) {
+		for (Benchmark benchmark : benchmarks()) {
+			if (benchmark.name.equals(name)) {
+				return benchmark;
+			}
+		}
+		throw new IllegalArgumentException("Unknown benchmark: " + name);
+	}
+
+	/**
+	 * Runs one benchmark on one board in a new JVM, with the same class path
+	 * and JVM options as this one.
+	 * @return the measured samples.
+	 */
+	private List<Sample> fork(Benchmark benchmark, Board board)
+	        throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + "/bin/java");
+		command.addAll(ManagementFactory.getRuntimeMXBean()
+		        .getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(TourBenchmark.class.getName());
+		command.add("--warmup");
+		command.add(String.valueOf(warmup));
+		command.add("--iterations");
+		command.add(String.valueOf(iterations));
+		command.add("--time");
+		command.add(String.valueOf(time));
+		command.add("--run");
+		command.add(benchmark.name);
+		command.add(board.toString());
+		Process process = new ProcessBuilder(command).redirectError(
+		        ProcessBuilder.Redirect.INHERIT).start();
+		List<Sample> samples = new ArrayList<Sample>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+		        process.getInputStream()));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(SAMPLE)) {
+					samples.add(new Sample(line.substring(SAMPLE.length())));
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		try {
+			if (process.waitFor() != 0 || samples.isEmpty()) {
+				throw new IOException("The fork running " + benchmark.name
+				        + " on " + board + " failed.");
+			}
+		}
+		catch (InterruptedException e) {
+			process.destroy();
+			throw new IOException("Interrupted while running "
+			        + benchmark.name + " on " + board + ".");
+		}
+		return samples;
+	}
+
+	/**
+	 * Runs the warmup iterations of one benchmark on one board in this JVM,
+	 * then measures it.
+	 * @return one Sample per measured iteration.
+	 */
+	private List<Sample> measure(Benchmark benchmark, Board board)
+	        throws IOException {
+		Operation operation = benchmark.setUp(board);
+		long nanos = time * 1000000;
+		long batch = 1;
+		for (int i = 0; i < warmup; i++) {
+			Sample sample = iterate(operation, batch, nanos);
+
+			// check the clock about a thousand times an iteration.
+			batch = Math.max(1, sample.ops / 1000);
+		}
+		List<Sample> samples = new ArrayList<Sample>();
+		for (int i = 0; i < iterations; i++) {
+			samples.add(iterate(operation, batch, nanos));
+		}
+		return samples;
+	}
+
+	/**
+	 * Runs the operation in batches until the time is up.
+	 * @param operation the operation to run.
+	 * @param batch the operations to run between looks at the clock.
+	 * @param nanos the time to run for.
+	 * @return the operations run, and the time, memory and collections they
+	 *         took.
+	 */
+	private static Sample iterate(Operation operation, long batch, long nanos)
+	        throws IOException {
+		com.sun.management.ThreadMXBean threads =
+		        (com.sun.management.ThreadMXBean) ManagementFactory
+		                .getThreadMXBean();
+		long gcCount = -gcCount();
+		long gcMillis = -gcMillis();
+		long bytes = -threads.getCurrentThreadAllocatedBytes();
+		long started = System.nanoTime();
+		long finished;
+		long ops = 0;
+		long result = 0;
+		do {
+			for (long i = 0; i < batch; i++) {
+				result += operation.run();
+			}
+			ops += batch;
+			finished = System.nanoTime();
+		}
+		while (finished - started < nanos);
+		bytes += threads.getCurrentThreadAllocatedBytes();
+		gcCount += gcCount();
+		gcMillis += gcMillis();
+		sink = result;
+		return new Sample(ops, finished - started, bytes, gcCount, gcMillis);
+	}
+
+	/**
+	 * Returns the garbage collections run so far, by every collector.
+	 */
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory
+		        .getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the time spent in garbage collection so far, by every
+	 * collector.
+	 */
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory
+		        .getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+
+	/**
+	 * Reads the results saved by --out.
+	 * @param file the CSV file.
+	 * @return the results, by benchmark and board.
+	 */
+	private static Map<String, Result> read(String file) throws IOException {
+		Map<String, Result> results = new HashMap<String, Result>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.isEmpty() && !line.equals(HEADER)) {
+					Result result = new Result(line);
+					results.put(result.key(), result);
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return results;
+	}
+
+	/**
+	 * Prints how each result changed from the baseline. A change is only
+	 * called faster or slower if it is bigger than the two standard
+	 * deviations put together; otherwise it is likely to be noise.
+	 */
+	private static void compare(List<Result> results,
+	        Map<String, Result> baseline) {
+		System.out.println();
+		System.out.println(String.format("%-24s %-14s %14s %14s %8s %-8s"
+		        + " %12s %12s", "Benchmark", "Board", "base ns/op", "ns/op",
+		        "change", "", "base B/op", "B/op"));
+		for (Result result : results) {
+			Result base = baseline.get(result.key());
+			if (base == null) {
+				continue;
+			}
+			double change = (result.nanos - base.nanos) / base.nanos;
+			String verdict = "~";
+			if (Math.abs(result.nanos - base.nanos) > result.stdev
+			        + base.stdev) {
+				verdict = change < 0 ? "faster" : "slower";
+			}
+			System.out.println(String.format("%-24s %-14s %14.1f %14.1f"
+			        + " %+7.1f%% %-8s %12.1f %12.1f", result.benchmark,
+			        result.board, base.nanos, result.nanos, change * 100,
+			        verdict, base.bytes, result.bytes));
+		}
+	}
+
+	// *********************************************************************
+	// MAIN
+	// *********************************************************************
+
+	/**
+	 * Runs the benchmarks with the given options.
+	 * @param args the options (see above).
+	 */
+	public static void main(String[] args) throws IOException {
+		TourBenchmark benchmark;
+		try {
+			benchmark = new TourBenchmark(args);
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE_TEXT);
+			System.exit(USAGE);
+			return;
+		}
+		benchmark.run();
+	}
+
+	// *********************************************************************
+	// classes
+	// *********************************************************************
+
+	/**
+	 * One operation to measure, set up and ready to run.
+	 */
+	private interface Operation {
+
+		/**
+		 * Runs the operation once.
+		 * @return a result of the work, so it can't be optimized away.
+		 * @throws IOException if the operation writes and fails.
+		 */
+		long run() throws IOException;
+	}
+
+	/**
+	 * A named benchmark, and the boards it runs on unless others are given.
+	 */
+	private abstract static class Benchmark {
+		final String name;
+		final String[] boards;
+
+		Benchmark(String name, String... boards) {
+			this.name = name;
+			this.boards = boards;
+		}
+
+		/**
+		 * Returns true if the benchmark can run on the given board.
+		 */
+		boolean accepts(Board board) {
+			return true;
+		}
+
+		/**
+		 * Sets up the operation to measure on the given board. Setting up
+		 * is not measured.
+		 */
+		abstract Operation setUp(Board board) throws IOException;
+	}
+
+	/**
+	 * Replays a tour on a VisitedSet, as a search does on its way down and
+	 * back up: the unvisited neighbours of each square are listed, then the
+	 * square is added, and once the board is full every square is taken
+	 * back.
+	 */
+	private abstract static class VisitedBenchmark extends Benchmark {
+
+		VisitedBenchmark(String name, String... boards) {
+			super(name, boards);
+		}
+
+		/**
+		 * Creates an empty VisitedSet of the kind to measure.
+		 */
+		abstract VisitedSet create(KnightGraph graph);
+
+		Operation setUp(Board board) {
+			final int[] path = solved(board).getPath();
+			final VisitedSet visited = create(KnightGraph.of(board.width,
+			        board.height));
+			final int[] moves = new int[8];
+			return new Operation() {
+				public long run() {
+					long count = 0;
+					for (int m = 0; m < path.length; m++) {
+						count += visited.unvisitedNeighbours(path[m], moves,
+						        0);
+						visited.add(path[m]);
+					}
+					for (int m = path.length - 1; m >= 0; m--) {
+						if (visited.contains(path[m])) {
+							visited.remove(path[m]);
+						}
+					}
+					return count;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Writes a tour with a TourWriter, to a stream that throws the bytes
+	 * away.
+	 */
+	private abstract static class FormatBenchmark extends Benchmark {
+
+		FormatBenchmark(String name) {
+			super(name, "8@0,0", "200@0,0", "1000@0,0");
+		}
+
+		/**
+		 * Writes the tour in the format to measure.
+		 */
+		abstract void write(TourWriter writer, int[] path, Board board)
+		        throws IOException;
+
+		Operation setUp(final Board board) {
+			final int[] path = solved(board).getPath();
+			final TourWriter writer = new TourWriter(OutputStream
+			        .nullOutputStream());
+			return new Operation() {
+				public long run() throws IOException {
+					write(writer, path, board);
+					writer.flush();
+					return path.length;
+				}
+			};
+		}
+	}
+
+	/**
+	 * A board and start square, written as "WxH@x,y" or "N@x,y".
+	 */
+	private static class Board {
+		final int width;
+		final int height;
+		final int x;
+		final int y;
+
+		Board(String text) {
+			String[] parts = text.toLowerCase().split("@", -1);
+			String[] sides = parts[0].split("x", -1);
+			String[] xy = parts.length == 2 ? parts[1].split(",", -1)
+			        : new String[0];
+			if (sides.length > 2 || xy.length != 2) {
+				throw new IllegalArgumentException("A board must be N or WxH,"
+				        + " and a start x,y: " + text);
+			}
+			width = parse("--size", sides[0].trim(), 1);
+			height = sides.length > 1 ? parse("--size", sides[1].trim(), 1)
+			        : width;
+			x = parse("--start", xy[0].trim(), 0);
+			y = parse("--start", xy[1].trim(), 0);
+		}
+
+		public String toString() {
+			return width + "x" + height + "@" + x + "," + y;
+		}
+	}
+
+	/**
+	 * The operations run in one iteration, and the time, memory and
+	 * garbage collections they took.
+	 */
+	private static class Sample {
+		final long ops;
+		final long nanos;
+		final long bytes;
+		final long gcCount;
+		final long gcMillis;
+
+		Sample(long ops, long nanos, long bytes, long gcCount,
+		        long gcMillis) {
+			this.ops = ops;
+			this.nanos = nanos;
+			this.bytes = bytes;
+			this.gcCount = gcCount;
+			this.gcMillis = gcMillis;
+		}
+
+		/**
+		 * Reads a Sample written by toString().
+		 */
+		Sample(String line) {
+			String[] fields = line.split(",");
+			ops = Long.parseLong(fields[0]);
+			nanos = Long.parseLong(fields[1]);
+			bytes = Long.parseLong(fields[2]);
+			gcCount = Long.parseLong(fields[3]);
+			gcMillis = Long.parseLong(fields[4]);
+		}
+
+		public String toString() {
+			return ops + "," + nanos + "," + bytes + "," + gcCount + ","
+			        + gcMillis;
+		}
+	}
+
+	/**
+	 * The result of one benchmark on one board, over all of its samples.
+	 */
+	private static class Result {
+		final String benchmark;
+		final String board;
+		final int samples;
+		final double nanos; // the mean time per operation
+		final double stdev; // the standard deviation of the time per op
+		final double bytes; // the bytes allocated per operation
+		final long gcCount;
+		final long gcMillis;
+
+		Result(String benchmark, String board, List<Sample> samples) {
+			this.benchmark = benchmark;
+			this.board = board;
+			this.samples = samples.size();
+			double sum = 0;
+			long ops = 0;
+			long allocated = 0;
+			long count = 0;
+			long millis = 0;
+			for (Sample sample : samples) {
+				sum += (double) sample.nanos / sample.ops;
+				ops += sample.ops;
+				allocated += sample.bytes;
+				count += sample.gcCount;
+				millis += sample.gcMillis;
+			}
+			nanos = sum / samples.size();
+			double squares = 0;
+			for (Sample sample : samples) {
+				double d = (double) sample.nanos / sample.ops - nanos;
+				squares += d * d;
+			}
+			stdev = samples.size() > 1 ? Math.sqrt(squares
+			        / (samples.size() - 1)) : 0;
+			bytes = (double) allocated / ops;
+			gcCount = count;
+			gcMillis = millis;
+		}
+
+		/**
+		 * Reads a Result saved by toString().
+		 */
+		Result(String line) {
+			String[] fields = line.split(",");
+			if (fields.length != 8) {
+				throw new IllegalArgumentException("Not a benchmark result: "
+				        + line);
+			}
+			benchmark = fields[0];
+			board = fields[1].replace(';', ',');
+			samples = Integer.parseInt(fields[2]);
+			nanos = Double.parseDouble(fields[3]);
+			stdev = Double.parseDouble(fields[4]);
+			bytes = Double.parseDouble(fields[5]);
+			gcCount = Long.parseLong(fields[6]);
+			gcMillis = Long.parseLong(fields[7]);
+		}
+
+		/**
+		 * Returns the benchmark and board, which identify the result.
+		 */
+		String key() {
+			return benchmark + " " + board;
+		}
+
+		/**
+		 * Formats the result as a row of the table.
+		 */
+		String format() {
+			return String.format("%-24s %-14s %4d %14.1f %12.1f %14.1f %5d"
+			        + " %8d", benchmark, board, samples, nanos, stdev, bytes,
+			        gcCount, gcMillis);
+		}
+
+		/**
+		 * Formats the result as a CSV record, with a ';' between the start
+		 * coordinates so the board stays one field.
+		 */
+		public String toString() {
+			return benchmark + "," + board.replace(',', ';') + "," + samples
+			        + "," + nanos + "," + stdev + "," + bytes + "," + gcCount
+			        + "," + gcMillis;
+		}
+	}
+}